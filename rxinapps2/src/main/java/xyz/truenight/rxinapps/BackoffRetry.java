@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+
+/**
+ * Handler for {@link Observable#retryWhen(Function)} which resubscribes with exponential backoff and jitter
+ */
+class BackoffRetry implements Function<Observable<Throwable>, ObservableSource<?>> {
+
+    private static final String TAG = RxInApps.TAG;
+
+    private final Predicate<Throwable> predicate;
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random = new Random();
+    private final AtomicInteger attempt = new AtomicInteger();
+
+    /**
+     * @param predicate  errors which should be retried
+     * @param baseDelay  delay before first retry in milliseconds
+     * @param maxDelay   upper bound of delay in milliseconds
+     */
+    BackoffRetry(Predicate<Throwable> predicate, int maxAttempts, long baseDelay, long maxDelay) {
+        this.predicate = predicate;
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Starts backoff from the beginning, should be called on successful emission
+     */
+    void reset() {
+        attempt.set(0);
+    }
+
+    @Override
+    public ObservableSource<?> apply(Observable<Throwable> errors) throws Exception {
+        return errors.flatMap(new Function<Throwable, ObservableSource<Long>>() {
+            @Override
+            public ObservableSource<Long> apply(Throwable throwable) throws Exception {
+                int current = attempt.getAndIncrement();
+                if (current >= maxAttempts || !predicate.test(throwable)) {
+                    return Observable.error(throwable);
+                }
+                long delay = delay(current);
+                Log.d(TAG, "Retry #" + (current + 1) + " in " + delay + "ms after " + throwable);
+                return Observable.timer(delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private long delay(int attempt) {
+        long delay = Math.min(maxDelay, baseDelay << Math.min(attempt, 30));
+        // equal jitter: half of delay is fixed, the other half is random
+        long half = delay / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * half);
+        }
+    }
+}
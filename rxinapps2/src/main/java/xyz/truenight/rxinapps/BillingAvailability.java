@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.List;
+
+import xyz.truenight.rxinapps.util.Constants;
+
+/**
+ * Caches availability of InAppBillingService for process lifetime.
+ * Cache is invalidated when Play Store package is added, replaced or removed
+ */
+class BillingAvailability extends BroadcastReceiver {
+
+    private static final String TAG = RxInApps.TAG;
+
+    private static volatile BillingAvailability instance;
+
+    private final Context context;
+    private volatile Boolean available;
+
+    static BillingAvailability get(Context context) {
+        BillingAvailability availability = instance;
+        if (availability == null) {
+            synchronized (BillingAvailability.class) {
+                availability = instance;
+                if (availability == null) {
+                    availability = instance = new BillingAvailability(context.getApplicationContext());
+                }
+            }
+        }
+        return availability;
+    }
+
+    private BillingAvailability(Context context) {
+        this.context = context;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(this, filter);
+    }
+
+    boolean isAvailable() {
+        Boolean value = available;
+        if (value == null) {
+            Intent intent = new Intent(Constants.BINDING_INTENT_VALUE);
+            List<ResolveInfo> list = context.getPackageManager().queryIntentServices(intent, 0);
+            available = value = list != null && list.size() > 0;
+        }
+        return value;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Uri data = intent.getData();
+        if (data != null && Constants.VENDING_INTENT_PACKAGE.equals(data.getSchemeSpecificPart())) {
+            Log.d(TAG, "Play Store package changed: " + intent.getAction());
+            available = null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runtime counters of {@link RxInApps} instance
+ */
+public final class BillingStats {
+
+    private final AtomicLong bindCount = new AtomicLong();
+    private final AtomicLong unbindCount = new AtomicLong();
+    private final AtomicLong connectedCount = new AtomicLong();
+    private final AtomicLong totalBindLatency = new AtomicLong();
+    private final AtomicLong lastBindLatency = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong skippedRefreshCount = new AtomicLong();
+    private final AtomicLong verificationHitCount = new AtomicLong();
+    private final AtomicLong verificationMissCount = new AtomicLong();
+
+    BillingStats() {
+    }
+
+    void onBind() {
+        bindCount.incrementAndGet();
+    }
+
+    void onUnbind() {
+        unbindCount.incrementAndGet();
+    }
+
+    void onConnected(long latency) {
+        connectedCount.incrementAndGet();
+        totalBindLatency.addAndGet(latency);
+        lastBindLatency.set(latency);
+    }
+
+    void onRefresh() {
+        refreshCount.incrementAndGet();
+    }
+
+    void onRefreshSkipped() {
+        skippedRefreshCount.incrementAndGet();
+    }
+
+    void onVerificationHit() {
+        verificationHitCount.incrementAndGet();
+    }
+
+    void onVerificationMiss() {
+        verificationMissCount.incrementAndGet();
+    }
+
+    /**
+     * Number of {@code bindService} calls made to InAppBillingService
+     */
+    public long getBindCount() {
+        return bindCount.get();
+    }
+
+    /**
+     * Number of {@code unbindService} calls made to InAppBillingService
+     */
+    public long getUnbindCount() {
+        return unbindCount.get();
+    }
+
+    /**
+     * Time in milliseconds between last {@code bindService} call and connection of service
+     */
+    public long getLastBindLatency() {
+        return lastBindLatency.get();
+    }
+
+    /**
+     * Average time in milliseconds between {@code bindService} call and connection of service
+     */
+    public long getAverageBindLatency() {
+        long count = connectedCount.get();
+        return count == 0 ? 0 : totalBindLatency.get() / count;
+    }
+
+    /**
+     * Number of purchases reloads which changed the cache
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * Number of purchases reloads which were skipped because response was not changed
+     */
+    public long getSkippedRefreshCount() {
+        return skippedRefreshCount.get();
+    }
+
+    /**
+     * Number of signature verifications answered from verification cache
+     */
+    public long getVerificationHitCount() {
+        return verificationHitCount.get();
+    }
+
+    /**
+     * Number of signature verifications which required RSA check
+     */
+    public long getVerificationMissCount() {
+        return verificationMissCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BillingStats{" +
+                "bindCount=" + getBindCount() +
+                ", unbindCount=" + getUnbindCount() +
+                ", lastBindLatency=" + getLastBindLatency() +
+                ", averageBindLatency=" + getAverageBindLatency() +
+                ", refreshCount=" + getRefreshCount() +
+                ", skippedRefreshCount=" + getSkippedRefreshCount() +
+                ", verificationHitCount=" + getVerificationHitCount() +
+                ", verificationMissCount=" + getVerificationMissCount() +
+                '}';
+    }
+}
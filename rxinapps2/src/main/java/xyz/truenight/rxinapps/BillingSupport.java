@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import android.os.IBinder;
+import android.os.RemoteException;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import xyz.truenight.rxinapps.util.Constants;
+
+/**
+ * Caches result of {@link IInAppBillingService#isBillingSupported(int, String, String)}
+ * per product type while the same service is bound. Only definitive answers are cached,
+ * transient errors are queried again next time
+ */
+class BillingSupport {
+
+    private final String packageName;
+
+    private IBinder binder;
+    private final Map<String, Boolean> supported = new HashMap<>();
+
+    BillingSupport(String packageName) {
+        this.packageName = packageName;
+    }
+
+    boolean isSupported(IInAppBillingService service, String productType) throws RemoteException {
+        IBinder current = service.asBinder();
+        synchronized (this) {
+            if (binder != current) {
+                binder = current;
+                supported.clear();
+            }
+            Boolean value = supported.get(productType);
+            if (value != null) {
+                return value;
+            }
+        }
+        int response = service.isBillingSupported(Constants.API_VERSION, packageName, productType);
+        boolean value = response == Constants.RESULT_OK;
+        if (value || response == Constants.RESULT_BILLING_UNAVAILABLE) {
+            synchronized (this) {
+                if (binder == current) {
+                    supported.put(productType, value);
+                }
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import android.util.Log;
+
+import com.android.vending.billing.IInAppBillingService;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.observables.ConnectableObservable;
+import io.reactivex.schedulers.Schedulers;
+import xyz.truenight.rxinapps.exception.ServiceDisconnectedException;
+
+/**
+ * Keeps InAppBillingService bound while it has users and during linger period after the last one
+ */
+class ConnectionManager {
+
+    private static final String TAG = RxInApps.TAG;
+
+    private static final long CONNECTION_TIMEOUT = 10; // seconds
+
+    private static final int RECONNECT_ATTEMPTS = 6;
+    private static final long RECONNECT_BASE_DELAY = 500; // milliseconds
+    private static final long RECONNECT_MAX_DELAY = 30000; // milliseconds
+
+    private final Observable<IInAppBillingService> source;
+    private final long linger;
+
+    private final Object lock = new Object();
+    private int refCount;
+    private Connection connection;
+    private Disposable lingerDisposable;
+
+    ConnectionManager(Observable<IInAppBillingService> source, long linger) {
+        this.source = source;
+        this.linger = linger;
+    }
+
+    /**
+     * Binds service again with backoff when connection timed out or service died
+     */
+    private Observable<IInAppBillingService> reconnecting() {
+        final BackoffRetry retry = new BackoffRetry(new Predicate<Throwable>() {
+            @Override
+            public boolean test(Throwable throwable) throws Exception {
+                return throwable instanceof TimeoutException
+                        || throwable instanceof ServiceDisconnectedException;
+            }
+        }, RECONNECT_ATTEMPTS, RECONNECT_BASE_DELAY, RECONNECT_MAX_DELAY);
+
+        return source
+                .timeout(Observable.timer(CONNECTION_TIMEOUT, TimeUnit.SECONDS),
+                        new Function<IInAppBillingService, ObservableSource<Long>>() {
+                            @Override
+                            public ObservableSource<Long> apply(IInAppBillingService service) throws Exception {
+                                // only connection establishing is limited in time
+                                return Observable.never();
+                            }
+                        })
+                .doOnNext(new Consumer<IInAppBillingService>() {
+                    @Override
+                    public void accept(IInAppBillingService service) throws Exception {
+                        retry.reset();
+                    }
+                })
+                .retryWhen(retry);
+    }
+
+    /**
+     * Observable which emits alive InAppBillingService and keeps it bound until disposed.
+     * Emits again when service was bound anew after its death
+     */
+    Observable<IInAppBillingService> connection() {
+        return Observable.using(new Callable<Disposable>() {
+            @Override
+            public Disposable call() throws Exception {
+                return retain();
+            }
+        }, new Function<Disposable, ObservableSource<IInAppBillingService>>() {
+            @Override
+            public ObservableSource<IInAppBillingService> apply(Disposable disposable) throws Exception {
+                synchronized (lock) {
+                    return connection.observable;
+                }
+            }
+        }, new Consumer<Disposable>() {
+            @Override
+            public void accept(Disposable disposable) throws Exception {
+                disposable.dispose();
+            }
+        }).filter(new Predicate<IInAppBillingService>() {
+            @Override
+            public boolean test(IInAppBillingService service) throws Exception {
+                // skip replayed service which died before reconnection
+                return service.asBinder().isBinderAlive();
+            }
+        });
+    }
+
+    /**
+     * Holds service bound until returned {@link Disposable} is disposed
+     */
+    Disposable retain() {
+        Connection created = null;
+        synchronized (lock) {
+            refCount++;
+            if (lingerDisposable != null) {
+                lingerDisposable.dispose();
+                lingerDisposable = null;
+            }
+            if (connection != null && connection.terminated) {
+                connection.disconnect();
+                connection = null;
+            }
+            if (connection == null) {
+                connection = created = new Connection(reconnecting());
+            }
+        }
+        if (created != null) {
+            created.connect();
+        }
+        return Disposables.fromAction(new Action() {
+            @Override
+            public void run() throws Exception {
+                release();
+            }
+        });
+    }
+
+    private void release() {
+        synchronized (lock) {
+            if (--refCount > 0) {
+                return;
+            }
+            if (linger <= 0) {
+                disconnect();
+            } else {
+                lingerDisposable = Schedulers.computation().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            if (refCount == 0) {
+                                disconnect();
+                            }
+                        }
+                    }
+                }, linger, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (connection != null) {
+            Log.d(TAG, "Release service connection");
+            connection.disconnect();
+            connection = null;
+        }
+    }
+
+    private static class Connection {
+
+        final ConnectableObservable<IInAppBillingService> observable;
+        volatile boolean terminated;
+        private Disposable disposable;
+        private boolean disconnected;
+
+        Connection(Observable<IInAppBillingService> source) {
+            observable = source
+                    .doOnTerminate(new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            terminated = true;
+                        }
+                    })
+                    .replay(1);
+        }
+
+        void connect() {
+            observable.connect(new Consumer<Disposable>() {
+                @Override
+                public void accept(Disposable d) throws Exception {
+                    synchronized (Connection.this) {
+                        if (disconnected) {
+                            d.dispose();
+                        } else {
+                            disposable = d;
+                        }
+                    }
+                }
+            });
+        }
+
+        synchronized void disconnect() {
+            disconnected = true;
+            if (disposable != null) {
+                disposable.dispose();
+            }
+        }
+    }
+}
@@ -21,36 +21,39 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.android.vending.billing.IInAppBillingService;
 
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.functions.Cancellable;
 import xyz.truenight.rxinapps.exception.InitializationException;
+import xyz.truenight.rxinapps.exception.ServiceDisconnectedException;
 import xyz.truenight.rxinapps.util.Constants;
 
+/**
+ * Binds InAppBillingService and emits it from {@link ServiceConnection} callback,
+ * so subscribing thread is never blocked. Service is unbound on dispose.
+ */
 class ConnectionOnSubscribe implements ObservableOnSubscribe<IInAppBillingService> {
 
     private static final String TAG = RxInApps.TAG;
 
     private final RxInApps context;
-    private IInAppBillingService service;
+    private final BillingStats stats;
 
-    public static ConnectionOnSubscribe create(final RxInApps context) {
-        return new ConnectionOnSubscribe(context);
+    public static ConnectionOnSubscribe create(final RxInApps context, BillingStats stats) {
+        return new ConnectionOnSubscribe(context, stats);
     }
 
-    private ConnectionOnSubscribe(RxInApps context) {
+    private ConnectionOnSubscribe(RxInApps context, BillingStats stats) {
         this.context = context;
-    }
-
-    private boolean isMainThread() {
-        return Looper.getMainLooper() == Looper.myLooper();
+        this.stats = stats;
     }
 
     @Override
@@ -61,49 +64,78 @@ class ConnectionOnSubscribe implements ObservableOnSubscribe<IInAppBillingServic
             return;
         }
 
-        final boolean mainThread = isMainThread();
+        final long bindTime = SystemClock.elapsedRealtime();
+
+        final IBinder.DeathRecipient deathRecipient = new IBinder.DeathRecipient() {
+            @Override
+            public void binderDied() {
+                Log.d(TAG, "binderDied");
+                emitter.tryOnError(new ServiceDisconnectedException());
+            }
+        };
 
-        final Semaphore semaphore = mainThread ? null : new Semaphore(0);
+        final AtomicReference<IBinder> binder = new AtomicReference<>();
 
         final ServiceConnection serviceConnection = new ServiceConnection() {
             @Override
             public void onServiceConnected(ComponentName componentName, IBinder iBinder) {
                 Log.d(TAG, "onServiceConnected");
-                service = IInAppBillingService.Stub.asInterface(iBinder);
-                if (mainThread) {
-                    emitter.onNext(service);
-                    emitter.onComplete();
-                } else {
-                    semaphore.release();
+                stats.onConnected(SystemClock.elapsedRealtime() - bindTime);
+                try {
+                    iBinder.linkToDeath(deathRecipient, 0);
+                    binder.set(iBinder);
+                } catch (RemoteException e) {
+                    // already dead
+                    deathRecipient.binderDied();
+                    return;
                 }
+                // stays subscribed to keep service bound
+                emitter.onNext(IInAppBillingService.Stub.asInterface(iBinder));
             }
 
             @Override
             public void onServiceDisconnected(ComponentName componentName) {
                 Log.d(TAG, "onServiceDisconnected");
-                service = null;
+                // cached service is invalid, emitter error causes rebinding
+                emitter.tryOnError(new ServiceDisconnectedException());
             }
         };
+
+        final Context appContext = context.getContext();
+        boolean bound;
         try {
-            context.getContext().bindService(new Intent(Constants.BINDING_INTENT_VALUE)
+            bound = appContext.bindService(new Intent(Constants.BINDING_INTENT_VALUE)
                     .setPackage(Constants.VENDING_INTENT_PACKAGE), serviceConnection, Context.BIND_AUTO_CREATE);
+            stats.onBind();
             Log.d(TAG, "Created new service connection");
         } catch (Exception e) {
             emitter.onError(new InitializationException("Can NOT initialize InAppBillingService", e));
             return;
         }
 
+        // runs immediately if emitter was disposed (e.g. by timeout) while binding
         emitter.setCancellable(new Cancellable() {
             @Override
             public void cancel() throws Exception {
-                context.getContext().unbindService(serviceConnection);
+                IBinder iBinder = binder.getAndSet(null);
+                if (iBinder != null) {
+                    iBinder.unlinkToDeath(deathRecipient, 0);
+                }
+                unbind(appContext, serviceConnection);
             }
         });
 
-        if (!mainThread) {
-            semaphore.acquireUninterruptibly();
-            emitter.onNext(service);
-            emitter.onComplete();
+        if (!bound) {
+            emitter.onError(new InitializationException("Can NOT bind InAppBillingService"));
+        }
+    }
+
+    private void unbind(Context context, ServiceConnection serviceConnection) {
+        try {
+            context.unbindService(serviceConnection);
+            stats.onUnbind();
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Service connection is not registered", e);
         }
     }
 }
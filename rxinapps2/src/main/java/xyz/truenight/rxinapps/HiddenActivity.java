@@ -23,7 +23,9 @@ import android.os.Bundle;
 import android.util.Log;
 
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+import io.reactivex.SingleEmitter;
 import io.reactivex.functions.Cancellable;
 import xyz.truenight.rxinapps.exception.BillingUnavailableException;
 import xyz.truenight.rxinapps.exception.DeveloperErrorException;
@@ -100,9 +102,11 @@ public class HiddenActivity extends Activity {
 
         if (resultCode == Activity.RESULT_OK
                 && responseCode == Constants.RESULT_OK) {
-            handleOkResponse(data, purchasePayload, rxInApps);
+            SingleEmitter<Purchase> emitter = finishBeforeResult(rxInApps);
+            rxInApps.deliverPurchaseResult(emitter, okResponse(data, purchasePayload, rxInApps));
         } else if (responseCode == Constants.RESULT_ITEM_ALREADY_OWNED) {
-            handleAlreadyOwnedResponse(data, purchasePayload, rxInApps);
+            SingleEmitter<Purchase> emitter = finishBeforeResult(rxInApps);
+            rxInApps.deliverPurchaseResult(emitter, alreadyOwnedResponse(data, purchasePayload, rxInApps));
         } else {
             Throwable throwable;
             switch (responseCode) {
@@ -131,85 +135,85 @@ public class HiddenActivity extends Activity {
         return true;
     }
 
-    private void handleOkResponse(Intent data, String purchasePayload, RxInApps rxInApps) {
-        String purchaseData = data.getStringExtra(Constants.INAPP_PURCHASE_DATA);
-        String dataSignature = data.getStringExtra(Constants.RESPONSE_INAPP_SIGNATURE);
+    /**
+     * Finishes activity right away, result is parsed, verified and persisted in background
+     *
+     * @return subscriber of this purchase, result must be delivered only to it
+     * because next purchase may start before result is ready
+     */
+    private SingleEmitter<Purchase> finishBeforeResult(RxInApps rxInApps) {
+        SingleEmitter<Purchase> emitter = rxInApps.getPurchaseEmitter();
+        RxUtils.setOnDispose(emitter, new Cancellable() {
+            @Override
+            public void cancel() throws Exception {
+                // activity is already finished
+            }
+        });
+        super.finish();
+        return emitter;
+    }
 
-        try {
-            Purchase purchase = rxInApps.getParser().fromString(purchaseData, Purchase.class);
-            purchase.setPurchaseSignature(dataSignature);
-            purchase.setRawResponse(purchaseData);
-            String productId = purchase.getProductId();
-            String developerPayload = purchase.getDeveloperPayload();
-
-            if (Utils.equal(purchasePayload, developerPayload)) {
-                if (RxInApps.verifyPurchaseSignature(productId, purchaseData, dataSignature)) {
-                    String productType = Utils.first(purchasePayload.split(":"));
-                    rxInApps.putPurchaseToCache(purchase, productType);
+    private static Callable<Purchase> okResponse(Intent data, final String purchasePayload, final RxInApps rxInApps) {
+        final String purchaseData = data.getStringExtra(Constants.INAPP_PURCHASE_DATA);
+        final String dataSignature = data.getStringExtra(Constants.RESPONSE_INAPP_SIGNATURE);
 
-                    rxInApps.deliverPurchaseResult(purchase);
-                    super.finish();
+        return new Callable<Purchase>() {
+            @Override
+            public Purchase call() throws Exception {
+                Purchase purchase = rxInApps.getParser().fromString(purchaseData, Purchase.class);
+                purchase.setPurchaseSignature(dataSignature);
+                purchase.setRawResponse(purchaseData);
+                String productId = purchase.getProductId();
+                String developerPayload = purchase.getDeveloperPayload();
+
+                if (Utils.equal(purchasePayload, developerPayload)) {
+                    if (RxInApps.verifyPurchaseSignature(productId, purchaseData, dataSignature)) {
+                        String productType = Utils.first(purchasePayload.split(":"));
+                        rxInApps.putPurchaseToCache(purchase, productType);
+                        return purchase;
+                    } else {
+                        throw new PurchaseFailedException(new SignatureException("Public key signature does NOT match"));
+                    }
                 } else {
-                    throw new PurchaseFailedException(new SignatureException("Public key signature does NOT match"));
+                    throw new PurchaseFailedException(new PayloadException(String.format("Payload mismatch: %s != %s", purchasePayload, developerPayload)));
                 }
-            } else {
-                throw new PurchaseFailedException(new PayloadException(String.format("Payload mismatch: %s != %s", purchasePayload, developerPayload)));
             }
-        } catch (Exception e) {
-            Log.e(TAG, "", e);
-            rxInApps.deliverPurchaseError(e);
-            super.finish();
-        }
+        };
     }
 
-    private void handleAlreadyOwnedResponse(Intent data, String purchasePayload, RxInApps rxInApps) {
-        String purchaseData = data.getStringExtra(Constants.INAPP_PURCHASE_DATA);
-        String dataSignature = data.getStringExtra(Constants.RESPONSE_INAPP_SIGNATURE);
+    private static Callable<Purchase> alreadyOwnedResponse(Intent data, final String purchasePayload, final RxInApps rxInApps) {
+        final String purchaseData = data.getStringExtra(Constants.INAPP_PURCHASE_DATA);
+        final String dataSignature = data.getStringExtra(Constants.RESPONSE_INAPP_SIGNATURE);
 
-        try {
-            Purchase purchase = rxInApps.getParser().fromString(purchaseData, Purchase.class);
-            purchase.setPurchaseSignature(dataSignature);
-            purchase.setRawResponse(purchaseData);
-            final String productId = purchase.getProductId();
-            String developerPayload = purchase.getDeveloperPayload();
-
-            if (Utils.equal(purchasePayload, developerPayload)) {
-                String productType = Utils.first(purchasePayload.split(":"));
-
-                Map<String, Purchase> map = rxInApps.getStorage().get(productType);
-
-                if (!Utils.containsKey(map, productId)) {
-                    rxInApps.putPurchaseToCache(purchase, productType);
-                    // todo is it necessary???
-//                        purchase = rxInApps.loadPurchasesByType(productType)
-//                                .compose(rxInApps.toMapAndCache(productType))
-//                                .map(new Func1<Map<String, Purchase>, Purchase>() {
-//                                    @Override
-//                                    public Purchase call(Map<String, Purchase> map) {
-//                                        return map.get(productId);
-//                                    }
-//                                })
-//                                .toBlocking()
-//                                .first();
-                } else {
-                    // todo is it necessary???
-//                    purchase = map.get(productId);
-                }
+        return new Callable<Purchase>() {
+            @Override
+            public Purchase call() throws Exception {
+                Purchase purchase = rxInApps.getParser().fromString(purchaseData, Purchase.class);
+                purchase.setPurchaseSignature(dataSignature);
+                purchase.setRawResponse(purchaseData);
+                final String productId = purchase.getProductId();
+                String developerPayload = purchase.getDeveloperPayload();
+
+                if (Utils.equal(purchasePayload, developerPayload)) {
+                    String productType = Utils.first(purchasePayload.split(":"));
 
-                if (ProductType.isManaged(productType) && !RxInApps.checkMerchantTransactionDetails(purchase)) {
-                    throw new PurchaseFailedException(new MerchantIdException("Invalid or tampered merchant id!"));
-                }
+                    Map<String, Purchase> map = rxInApps.getCachedPurchases(productType);
+
+                    if (!Utils.containsKey(map, productId)) {
+                        rxInApps.putPurchaseToCache(purchase, productType);
+                    }
+
+                    if (ProductType.isManaged(productType) && !RxInApps.checkMerchantTransactionDetails(purchase)) {
+                        throw new PurchaseFailedException(new MerchantIdException("Invalid or tampered merchant id!"));
+                    }
 
-                purchase.setRestored(true);
-                rxInApps.deliverPurchaseResult(purchase);
-                super.finish();
-            } else {
-                throw new PurchaseFailedException(new PayloadException(String.format("Payload mismatch: %s != %s", purchasePayload, developerPayload)));
+                    purchase.setRestored(true);
+                    return purchase;
+                } else {
+                    throw new PurchaseFailedException(new PayloadException(String.format("Payload mismatch: %s != %s", purchasePayload, developerPayload)));
+                }
             }
-        } catch (Exception e) {
-            rxInApps.deliverPurchaseError(e);
-            super.finish();
-        }
+        };
     }
 
     @Override
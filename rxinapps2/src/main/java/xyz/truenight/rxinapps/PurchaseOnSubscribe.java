@@ -101,16 +101,13 @@ class PurchaseOnSubscribe implements SingleOnSubscribe<Purchase> {
                     }
                 } else if (responseCode == Constants.RESULT_ITEM_ALREADY_OWNED) {
 
-                    Map<String, Purchase> map = context.getStorage().get(productType);
+                    Map<String, Purchase> map = context.getCachedPurchases(productType);
                     Purchase purchase;
 
                     if (Utils.containsKey(map, productId)) {
                         purchase = map.get(productId);
                     } else {
-                        context.loadPurchasesByType(billingService, productType)
-                                .compose(context.toMapAndCache(productType))
-                                .subscribe();
-                        map = context.getStorage().get(productType);
+                        map = context.loadPurchasesToCache(billingService, productType).blockingGet();
                         purchase = map.get(productId);
                     }
 
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import xyz.truenight.rxinapps.model.Purchase;
+import xyz.truenight.rxinapps.util.Storage;
+import xyz.truenight.rxinapps.util.Storages;
+import xyz.truenight.utils.Utils;
+
+/**
+ * Keeps every purchase under its own key and list of product ids under index key,
+ * so change of single purchase writes only this purchase. Full map of purchases is kept in memory
+ */
+class PurchaseStore {
+
+    /**
+     * Digest of the Play response purchases were loaded from, removed by every local change
+     */
+    static final String DIGEST = ":DIGEST";
+
+    private static final String INDEX = ":INDEX";
+    private static final String ITEM = ":ITEM:";
+
+    private final Storage storage;
+    private final Listener listener;
+    private final ConcurrentMap<String, Map<String, Purchase>> snapshots = new ConcurrentHashMap<>();
+
+    PurchaseStore(Storage storage) {
+        this(storage, null);
+    }
+
+    /**
+     * @param listener notified of every change while store is locked, so changes are notified in order
+     */
+    PurchaseStore(Storage storage, Listener listener) {
+        this.storage = storage;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns unmodifiable snapshot of cached purchases mapped by product id
+     * or null if purchases of type were not cached
+     */
+    Map<String, Purchase> get(String productType) {
+        Map<String, Purchase> snapshot = snapshots.get(productType);
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = snapshots.get(productType);
+                if (snapshot == null) {
+                    snapshot = load(productType);
+                    if (snapshot != null) {
+                        snapshots.put(productType, snapshot);
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns true if purchases are cached, were loaded from response with specified digest
+     * and were not changed locally since
+     */
+    boolean isUnchanged(String productType, String digest) {
+        return get(productType) != null && digest.equals(storage.get(productType + DIGEST));
+    }
+
+    /**
+     * Replaces cached purchases, only changed purchases are written.
+     * Other values are written together with purchases
+     *
+     * @return new snapshot of cached purchases
+     */
+    synchronized Map<String, Purchase> replace(String productType, Map<String, Purchase> purchases, Map<String, Object> other) {
+        Map<String, Purchase> previous = get(productType);
+        Map<String, Object> values = new HashMap<>(other);
+        for (Map.Entry<String, Purchase> entry : purchases.entrySet()) {
+            Purchase old = previous == null ? null : previous.get(entry.getKey());
+            if (!same(old, entry.getValue())) {
+                values.put(itemKey(productType, entry.getKey()), entry.getValue());
+            }
+        }
+        if (previous != null) {
+            for (String productId : previous.keySet()) {
+                if (!purchases.containsKey(productId)) {
+                    values.put(itemKey(productType, productId), null);
+                }
+            }
+        }
+        if (previous == null || !previous.keySet().equals(purchases.keySet())) {
+            values.put(productType + INDEX, new Index(purchases.keySet()));
+        }
+        Storages.putAll(storage, values);
+        Map<String, Purchase> current = Collections.unmodifiableMap(new HashMap<>(purchases));
+        snapshots.put(productType, current);
+        notifyChanged(productType, previous, current);
+        return current;
+    }
+
+    /**
+     * Puts single purchase to cache
+     */
+    synchronized void put(String productType, Purchase purchase) {
+        Map<String, Purchase> previous = get(productType);
+        // previous instance may be held by subscribers, so it is copied
+        Map<String, Purchase> map = previous == null ? new HashMap<String, Purchase>() : new HashMap<>(previous);
+        map.put(purchase.getProductId(), purchase);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put(itemKey(productType, purchase.getProductId()), purchase);
+        if (previous == null || !previous.containsKey(purchase.getProductId())) {
+            values.put(productType + INDEX, new Index(map.keySet()));
+        }
+        clearDigest(productType, values);
+        Storages.putAll(storage, values);
+        Map<String, Purchase> current = Collections.unmodifiableMap(map);
+        snapshots.put(productType, current);
+        notifyChanged(productType, previous, current);
+    }
+
+    /**
+     * Removes single purchase from cache
+     */
+    synchronized void remove(String productType, String productId) {
+        Map<String, Purchase> previous = get(productType);
+        if (previous == null || !previous.containsKey(productId)) {
+            return;
+        }
+        Map<String, Purchase> map = new HashMap<>(previous);
+        map.remove(productId);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put(itemKey(productType, productId), null);
+        values.put(productType + INDEX, new Index(map.keySet()));
+        clearDigest(productType, values);
+        Storages.putAll(storage, values);
+        Map<String, Purchase> current = Collections.unmodifiableMap(map);
+        snapshots.put(productType, current);
+        notifyChanged(productType, previous, current);
+    }
+
+    private void notifyChanged(String productType, Map<String, Purchase> previous, Map<String, Purchase> current) {
+        if (listener != null) {
+            listener.onChanged(productType, previous, current);
+        }
+    }
+
+    private Map<String, Purchase> load(String productType) {
+        Index index = storage.get(productType + INDEX);
+        if (index == null) {
+            return migrate(productType);
+        }
+        Map<String, Purchase> map = new HashMap<>();
+        if (index.productIds != null) {
+            for (String productId : index.productIds) {
+                Purchase purchase = storage.get(itemKey(productType, productId));
+                if (purchase != null) {
+                    map.put(productId, purchase);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Moves purchases from map stored under product type by previous versions
+     */
+    private Map<String, Purchase> migrate(String productType) {
+        Map<String, Purchase> legacy = storage.get(productType);
+        if (legacy == null) {
+            return null;
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, Purchase> entry : legacy.entrySet()) {
+            values.put(itemKey(productType, entry.getKey()), entry.getValue());
+        }
+        values.put(productType + INDEX, new Index(legacy.keySet()));
+        values.put(productType, null);
+        Storages.putAll(storage, values);
+        return Collections.unmodifiableMap(new HashMap<>(legacy));
+    }
+
+    /**
+     * Cached purchases no longer match the last response, so next reload can't be skipped
+     */
+    private void clearDigest(String productType, Map<String, Object> values) {
+        if (storage.get(productType + DIGEST) != null) {
+            values.put(productType + DIGEST, null);
+        }
+    }
+
+    private static String itemKey(String productType, String productId) {
+        return productType + ITEM + productId;
+    }
+
+    private static boolean same(Purchase old, Purchase purchase) {
+        return old != null
+                && Utils.equal(old.getRawResponse(), purchase.getRawResponse())
+                && Utils.equal(old.getPurchaseSignature(), purchase.getPurchaseSignature());
+    }
+
+    interface Listener {
+
+        /**
+         * @param previous purchases before change or null if they were not cached
+         * @param current  purchases after change
+         */
+        void onChanged(String productType, Map<String, Purchase> previous, Map<String, Purchase> current);
+    }
+
+    static class Index {
+        List<String> productIds;
+
+        Index() {
+        }
+
+        Index(Iterable<String> productIds) {
+            this.productIds = new ArrayList<>();
+            for (String productId : productIds) {
+                this.productIds.add(productId);
+            }
+        }
+    }
+}
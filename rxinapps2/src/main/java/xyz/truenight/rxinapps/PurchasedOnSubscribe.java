@@ -21,67 +21,70 @@ import android.util.Log;
 
 import com.android.vending.billing.IInAppBillingService;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Callable;
 
-import io.reactivex.SingleEmitter;
-import io.reactivex.SingleOnSubscribe;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.functions.BiFunction;
 import xyz.truenight.rxinapps.exception.LoadFailedException;
-import xyz.truenight.rxinapps.model.Purchase;
 import xyz.truenight.rxinapps.util.Constants;
-import xyz.truenight.rxinapps.util.Parser;
 import xyz.truenight.utils.Utils;
 
 /**
  * Copyright (C) 2017 Mikhail Frolov
  */
 
-class PurchasedOnSubscribe implements SingleOnSubscribe<List<Purchase>> {
+/**
+ * Generates pages of purchases following continuation token, one {@code getPurchases} call per requested page
+ */
+class PurchasedOnSubscribe implements BiFunction<String, Emitter<PurchasesPage>, String> {
 
     private static final String TAG = RxInApps.TAG;
 
+    private static final String FIRST_PAGE = "";
+
     private IInAppBillingService billingService;
     private String packageName;
-    private Parser parser;
     private String type;
 
-    public static PurchasedOnSubscribe create(IInAppBillingService billingService, String packageName, Parser parser, String type) {
-        return new PurchasedOnSubscribe(billingService, packageName, parser, type);
+    public static Flowable<PurchasesPage> create(IInAppBillingService billingService, String packageName, String type) {
+        return Flowable.generate(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return FIRST_PAGE;
+            }
+        }, new PurchasedOnSubscribe(billingService, packageName, type));
     }
 
-    public PurchasedOnSubscribe(IInAppBillingService billingService, String packageName, Parser parser, String type) {
+    public PurchasedOnSubscribe(IInAppBillingService billingService, String packageName, String type) {
         this.billingService = billingService;
         this.packageName = packageName;
-        this.parser = parser;
         this.type = type;
     }
 
     @Override
-    public void subscribe(SingleEmitter<List<Purchase>> emitter) throws Exception {
+    public String apply(String token, Emitter<PurchasesPage> emitter) throws Exception {
         try {
-            Bundle bundle = billingService.getPurchases(Constants.API_VERSION, packageName, type, null);
+            Bundle bundle = billingService.getPurchases(Constants.API_VERSION, packageName, type,
+                    Utils.isEmpty(token) ? null : token);
             if (bundle.getInt(Constants.RESPONSE_CODE) == Constants.RESULT_OK) {
-                ArrayList<String> purchaseList = bundle.getStringArrayList(Constants.INAPP_PURCHASE_DATA_LIST);
-                ArrayList<String> signatureList = bundle.getStringArrayList(Constants.INAPP_DATA_SIGNATURE_LIST);
+                emitter.onNext(new PurchasesPage(
+                        bundle.getStringArrayList(Constants.INAPP_PURCHASE_DATA_LIST),
+                        bundle.getStringArrayList(Constants.INAPP_DATA_SIGNATURE_LIST)));
 
-                List<Purchase> list = new ArrayList<>(Utils.sizeOf(purchaseList));
-                if (purchaseList != null) {
-                    for (int i = 0; i < purchaseList.size(); i++) {
-                        String jsonData = purchaseList.get(i);
-                        Purchase purchase = parser.fromString(jsonData, Purchase.class);
-                        String signature = signatureList != null && signatureList.size() > i ? signatureList.get(i) : null;
-                        purchase.setPurchaseSignature(signature);
-                        purchase.setRawResponse(jsonData);
-                        list.add(purchase);
-                    }
+                String nextToken = bundle.getString(Constants.INAPP_CONTINUATION_TOKEN);
+                if (Utils.isEmpty(nextToken)) {
+                    emitter.onComplete();
                 }
-                emitter.onSuccess(list);
+                return nextToken;
             } else {
-                throw new LoadFailedException("Failed to load purchases: RESPONSE_CODE=" + bundle.getInt(Constants.RESPONSE_CODE));
+                int response = bundle.getInt(Constants.RESPONSE_CODE);
+                throw new LoadFailedException("Failed to load purchases: RESPONSE_CODE=" + response, response);
             }
         } catch (Exception e) {
             Log.e(TAG, "", e);
             emitter.onError(e);
+            return token;
         }
     }
 }
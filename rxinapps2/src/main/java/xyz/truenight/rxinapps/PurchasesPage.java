@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import xyz.truenight.rxinapps.model.Purchase;
+import xyz.truenight.rxinapps.util.Parser;
+
+/**
+ * Raw page of {@code getPurchases} response, parsed only when needed
+ */
+class PurchasesPage {
+
+    private final List<String> purchaseList;
+    private final List<String> signatureList;
+
+    PurchasesPage(List<String> purchaseList, List<String> signatureList) {
+        this.purchaseList = purchaseList != null ? purchaseList : Collections.<String>emptyList();
+        this.signatureList = signatureList != null ? signatureList : Collections.<String>emptyList();
+    }
+
+    List<Purchase> parse(Parser parser) throws Exception {
+        List<Purchase> list = new ArrayList<>(purchaseList.size());
+        for (int i = 0; i < purchaseList.size(); i++) {
+            String jsonData = purchaseList.get(i);
+            Purchase purchase = parser.fromString(jsonData, Purchase.class);
+            purchase.setPurchaseSignature(signature(i));
+            purchase.setRawResponse(jsonData);
+            list.add(purchase);
+        }
+        return list;
+    }
+
+    private String signature(int index) {
+        return signatureList.size() > index ? signatureList.get(index) : null;
+    }
+
+    /**
+     * SHA-256 of purchase data and signatures of all pages
+     */
+    static String digest(List<PurchasesPage> pages) {
+        MessageDigest digest = Digests.sha256();
+        for (PurchasesPage page : pages) {
+            for (int i = 0; i < page.purchaseList.size(); i++) {
+                Digests.update(digest, page.purchaseList.get(i));
+                Digests.update(digest, page.signature(i));
+            }
+        }
+        return Digests.hex(digest.digest());
+    }
+}
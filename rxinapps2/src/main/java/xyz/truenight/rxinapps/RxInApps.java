@@ -17,47 +17,64 @@
 package xyz.truenight.rxinapps;
 
 import android.content.Context;
-import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
+import android.os.DeadObjectException;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
 import com.android.vending.billing.IInAppBillingService;
 
+import org.reactivestreams.Publisher;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
-import io.reactivex.ObservableSource;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleSource;
-import io.reactivex.SingleTransformer;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Action;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.BiPredicate;
 import io.reactivex.functions.Cancellable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
 import io.reactivex.subjects.Subject;
+import xyz.truenight.rxinapps.exception.BillingUnavailableException;
+import xyz.truenight.rxinapps.exception.LoadFailedException;
 import xyz.truenight.rxinapps.exception.ProductNotFoundException;
 import xyz.truenight.rxinapps.model.ProductType;
 import xyz.truenight.rxinapps.model.Purchase;
+import xyz.truenight.rxinapps.model.PurchaseDelta;
 import xyz.truenight.rxinapps.model.SkuDetails;
 import xyz.truenight.rxinapps.util.Constants;
 import xyz.truenight.rxinapps.util.GsonParser;
 import xyz.truenight.rxinapps.util.HawkStorage;
 import xyz.truenight.rxinapps.util.Parser;
-import xyz.truenight.rxinapps.util.Security;
+import xyz.truenight.rxinapps.util.PurchaseVerifier;
 import xyz.truenight.rxinapps.util.Storage;
+import xyz.truenight.rxinapps.util.WriteBehindStorage;
 import xyz.truenight.utils.Utils;
 
 public class RxInApps extends ContextHolder {
@@ -65,18 +82,73 @@ public class RxInApps extends ContextHolder {
     public static final String TAG = RxInApps.class.getSimpleName();
     public static final String VERSION = "v1";
     private static final String LAST_LOAD = ":LAST_LOAD";
+    private static final long CHANGES_DEBOUNCE = 100; // milliseconds
+    private static final int VERIFY_CHUNK_MIN = 16;
+
+    private static final int SKU_DETAILS_RETRY_ATTEMPTS = 2;
+    private static final long SKU_DETAILS_RETRY_BASE_DELAY = 200; // milliseconds
+    private static final long SKU_DETAILS_RETRY_MAX_DELAY = 1000; // milliseconds
+    private static final Predicate<Throwable> SKU_DETAILS_RETRY_ERRORS = new Predicate<Throwable>() {
+        @Override
+        public boolean test(Throwable throwable) throws Exception {
+            if (throwable instanceof LoadFailedException) {
+                // other codes are caused by request itself, retry gives the same result
+                int response = ((LoadFailedException) throwable).getResponseCode();
+                return response == Constants.RESULT_ERROR || response == Constants.RESULT_SERVICE_UNAVAILABLE;
+            }
+            // dead service is handled by reconnection
+            return throwable instanceof RemoteException && !(throwable instanceof DeadObjectException);
+        }
+    };
 
     private static final Date DATE_MERCHANT_LIMIT_1 = new Date(2012, 12, 5); //5th December 2012
     private static final Date DATE_MERCHANT_LIMIT_2 = new Date(2015, 7, 20); //21st July 2015
 
-    private static String licenseKey;
+    private static final BiPredicate<Map<String, Purchase>, Map<String, Purchase>> SAME_PURCHASES =
+            new BiPredicate<Map<String, Purchase>, Map<String, Purchase>>() {
+                @Override
+                public boolean test(Map<String, Purchase> previous, Map<String, Purchase> current) throws Exception {
+                    if (previous.size() != current.size()) {
+                        return false;
+                    }
+                    for (Map.Entry<String, Purchase> entry : current.entrySet()) {
+                        Purchase purchase = previous.get(entry.getKey());
+                        if (purchase == null
+                                || !Utils.equal(purchase.getRawResponse(), entry.getValue().getRawResponse())
+                                || !Utils.equal(purchase.getPurchaseSignature(), entry.getValue().getPurchaseSignature())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            };
+
+    private static VerificationCache verificationCache;
     private static String merchantId;
     private static RxInApps instance;
 
     public static void init(Builder builder) {
         instance = new RxInApps(builder);
-        licenseKey = builder.getLicenseKey();
+        String licenseKey = builder.getLicenseKey();
+        verificationCache = Utils.isEmpty(licenseKey) ? null
+                : new VerificationCache(new PurchaseVerifier(licenseKey), licenseKey,
+                builder.getVerificationCacheSize(),
+                builder.isPersistVerification() ? instance.getStorage() : null,
+                builder.getIoScheduler(), instance.getStats());
         merchantId = builder.getMerchantId();
+        if (builder.isWarmUp()) {
+            instance.warmUp().subscribe(new Action() {
+                @Override
+                public void run() throws Exception {
+                    Log.d(TAG, "Warm up finished");
+                }
+            }, new Consumer<Throwable>() {
+                @Override
+                public void accept(Throwable throwable) throws Exception {
+                    Log.w(TAG, "Warm up failed", throwable);
+                }
+            });
+        }
     }
 
     public static synchronized RxInApps get() {
@@ -89,34 +161,61 @@ public class RxInApps extends ContextHolder {
     private final String packageName;
     private final Storage storage;
     private final long cacheLifetime;
+    private final long maxStaleness;
     private final Parser parser;
-    private final Subject<Integer> purchasesChanged;
-
+    private final ConcurrentMap<String, Subject<Map<String, Purchase>>> purchasesChanged = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Subject<PurchaseDelta>> purchaseDeltas = new ConcurrentHashMap<>();
+
+    private final Scheduler ioScheduler;
+    private final Scheduler resultScheduler;
+    private final List<String> warmUpProducts;
+    private final List<String> warmUpSubscriptions;
+    private final BillingStats stats;
+    private final BillingSupport billingSupport;
+    private final ConnectionManager connectionManager;
+    private final SkuDetailsCache skuDetailsCache;
+    private final PurchaseStore purchaseStore;
+    private final int skuDetailsParallelism;
+    private final long skuDetailsBatching;
+    private final ConcurrentMap<String, SkuDetailsBatcher> skuDetailsBatchers = new ConcurrentHashMap<>();
+
+    private final SingleFlight<String, Map<String, Purchase>> purchaseReloads = new SingleFlight<>();
     private final AtomicReference<SingleEmitter<Purchase>> purchaseSubscriber = new AtomicReference<>();
-    private final Observable<IInAppBillingService> connection = Observable.create(ConnectionOnSubscribe.create(RxInApps.this))
-            .timeout(10, TimeUnit.SECONDS)
-            .retry(new Predicate<Throwable>() {
-                @Override
-                public boolean test(Throwable throwable) throws Exception {
-                    return throwable instanceof TimeoutException;
-                }
-            }).share();/*RxJavaPlugins.onAssembly(
-            new ObservableCacheRefCount<>(
-                    Observable.create(ConnectionOnSubscribe.create(RxInApps.this))
-                            .timeout(10, TimeUnit.SECONDS)
-                            .retry()
-                            .publish()
-            )
-    );*/
 
     private RxInApps(Builder builder) {
         super(builder.getContext());
         this.cacheLifetime = builder.getCacheLifetime();
+        this.maxStaleness = builder.getMaxStaleness();
         this.parser = builder.getParser();
         this.packageName = getContext().getApplicationContext().getPackageName();
 
         this.storage = builder.getStorage();
-        purchasesChanged = PublishSubject.<Integer>create().toSerialized();
+        this.purchaseStore = new PurchaseStore(storage, new PurchaseStore.Listener() {
+            @Override
+            public void onChanged(String productType, Map<String, Purchase> previous, Map<String, Purchase> current) {
+                publishPurchases(productType, previous, current);
+            }
+        });
+        this.skuDetailsCache = new SkuDetailsCache(storage,
+                builder.getSkuDetailsCacheLifetime(), builder.getSkuDetailsCacheSize());
+        this.skuDetailsParallelism = builder.getSkuDetailsParallelism();
+        this.skuDetailsBatching = builder.getSkuDetailsBatching();
+
+        this.ioScheduler = builder.getIoScheduler();
+        this.resultScheduler = builder.getResultScheduler();
+        this.warmUpProducts = builder.getWarmUpProducts();
+        this.warmUpSubscriptions = builder.getWarmUpSubscriptions();
+        this.stats = new BillingStats();
+        this.billingSupport = new BillingSupport(packageName);
+        this.connectionManager = new ConnectionManager(
+                Observable.create(ConnectionOnSubscribe.create(RxInApps.this, stats))
+                        .doOnNext(new Consumer<IInAppBillingService>() {
+                            @Override
+                            public void accept(IInAppBillingService billingService) throws Exception {
+                                prefetchBillingSupported(billingService);
+                            }
+                        }),
+                builder.getConnectionLinger());
     }
 
     Parser getParser() {
@@ -127,14 +226,28 @@ public class RxInApps extends ContextHolder {
         return storage;
     }
 
+    /**
+     * Writes pending changes of cache to storage when write-behind is enabled,
+     * returns when they are written
+     */
+    public void flushStorage() {
+        if (storage instanceof WriteBehindStorage) {
+            ((WriteBehindStorage) storage).flush();
+        }
+    }
+
+    /**
+     * Runtime counters of this instance
+     */
+    public BillingStats getStats() {
+        return stats;
+    }
+
     /**
      * Checks availability of InAppBillingService
      */
     public static boolean isIabServiceAvailable(Context context) {
-        final PackageManager packageManager = context.getPackageManager();
-        final Intent intent = new Intent(Constants.BINDING_INTENT_VALUE);
-        List<ResolveInfo> list = packageManager.queryIntentServices(intent, 0);
-        return list.size() > 0;
+        return BillingAvailability.get(context).isAvailable();
     }
 
     /**
@@ -146,6 +259,51 @@ public class RxInApps extends ContextHolder {
                 purchase.getPurchaseSignature()) && checkMerchantTransactionDetails(purchase);
     }
 
+    /**
+     * Verifies purchases by license key and merchant id in parallel on pool sized to available processors.
+     * Blocks until all purchases are verified
+     *
+     * @return validity of purchases in input order
+     */
+    public static Map<Purchase, Boolean> verifyAll(List<Purchase> purchases) {
+        return verifyAllAsync(purchases).blockingGet();
+    }
+
+    /**
+     * Same as {@link #verifyAll(List)} but asynchronous
+     */
+    public static Single<Map<Purchase, Boolean>> verifyAllAsync(final List<Purchase> purchases) {
+        final int size = purchases.size();
+        final boolean[] results = new boolean[size];
+        final int chunks = Math.max(1, Math.min(VerifyPool.THREADS, size / VERIFY_CHUNK_MIN));
+        final int chunkSize = (size + chunks - 1) / chunks;
+        return Flowable.range(0, chunks)
+                .flatMapCompletable(new Function<Integer, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(final Integer chunk) throws Exception {
+                        return Completable.fromAction(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                int end = Math.min(size, (chunk + 1) * chunkSize);
+                                for (int i = chunk * chunkSize; i < end; i++) {
+                                    results[i] = isValid(purchases.get(i));
+                                }
+                            }
+                        }).subscribeOn(VerifyPool.SCHEDULER);
+                    }
+                })
+                .toSingle(new Callable<Map<Purchase, Boolean>>() {
+                    @Override
+                    public Map<Purchase, Boolean> call() throws Exception {
+                        Map<Purchase, Boolean> map = new LinkedHashMap<>(size);
+                        for (int i = 0; i < size; i++) {
+                            map.put(purchases.get(i), results[i]);
+                        }
+                        return map;
+                    }
+                });
+    }
+
     /**
      * Checks license key validity
      * <p>
@@ -157,7 +315,8 @@ public class RxInApps extends ContextHolder {
              * Skip the signature check if the provided License Key is NULL and return true in order to
              * continue the purchase flow
              */
-            return Utils.isEmpty(licenseKey) || Security.verifyPurchase(productId, licenseKey, purchaseData, dataSignature);
+            VerificationCache cache = RxInApps.verificationCache;
+            return cache == null || cache.verifyPurchase(productId, purchaseData, dataSignature);
         } catch (Exception e) {
             return false;
         }
@@ -195,101 +354,329 @@ public class RxInApps extends ContextHolder {
      * Observable which emits InAppBillingService while this service is bound
      */
     public Single<IInAppBillingService> initialization() {
-        // cache instance during timeout
-        return connection
+        return deliver(connectionManager.connection()
+                .firstOrError());
+    }
+
+    private <T> Single<T> deliver(Single<T> single) {
+        return resultScheduler == null ? single : single.observeOn(resultScheduler);
+    }
+
+    private <T> Observable<T> deliver(Observable<T> observable) {
+        return resultScheduler == null ? observable : observable.observeOn(resultScheduler);
+    }
+
+    private <T> Flowable<T> deliver(Flowable<T> flowable) {
+        // prefetch of single item keeps downstream requests, so pages are loaded on demand
+        return resultScheduler == null ? flowable : flowable.observeOn(resultScheduler, false, 1);
+    }
+
+    private Completable deliver(Completable completable) {
+        return resultScheduler == null ? completable : completable.observeOn(resultScheduler);
+    }
+
+    /**
+     * Keeps service bound until {@link Single} returned by function is finished.
+     * {@link Single} is subscribed on IO scheduler, so no binder call is made on caller's thread
+     */
+    <T> Single<T> withService(final Function<IInAppBillingService, SingleSource<T>> function) {
+        return Single.using(new Callable<Disposable>() {
+            @Override
+            public Disposable call() throws Exception {
+                return connectionManager.retain();
+            }
+        }, new Function<Disposable, SingleSource<T>>() {
+            @Override
+            public SingleSource<T> apply(Disposable disposable) throws Exception {
+                return connectionManager.connection()
+                        .firstOrError()
+                        .flatMap(new Function<IInAppBillingService, SingleSource<T>>() {
+                            @Override
+                            public SingleSource<T> apply(IInAppBillingService billingService) throws Exception {
+                                return Single.wrap(function.apply(billingService))
+                                        .subscribeOn(ioScheduler);
+                            }
+                        });
+            }
+        }, new Consumer<Disposable>() {
+            @Override
+            public void accept(Disposable disposable) throws Exception {
+                disposable.dispose();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #withService(Function)} for streams
+     */
+    <T> Flowable<T> withServiceFlowable(final Function<IInAppBillingService, Publisher<T>> function) {
+        return Flowable.using(new Callable<Disposable>() {
+            @Override
+            public Disposable call() throws Exception {
+                return connectionManager.retain();
+            }
+        }, new Function<Disposable, Publisher<T>>() {
+            @Override
+            public Publisher<T> apply(Disposable disposable) throws Exception {
+                return connectionManager.connection()
+                        .firstOrError()
+                        .flatMapPublisher(new Function<IInAppBillingService, Publisher<T>>() {
+                            @Override
+                            public Publisher<T> apply(IInAppBillingService billingService) throws Exception {
+                                return Flowable.fromPublisher(function.apply(billingService))
+                                        .subscribeOn(ioScheduler);
+                            }
+                        });
+            }
+        }, new Consumer<Disposable>() {
+            @Override
+            public void accept(Disposable disposable) throws Exception {
+                disposable.dispose();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #withService(Function)}, but function is applied again to the new service
+     * if current one died during the call. Should be used for idempotent calls only
+     */
+    <T> Single<T> withReconnectingService(final Function<IInAppBillingService, SingleSource<T>> function) {
+        return connectionManager.connection()
+                .switchMapSingle(new Function<IInAppBillingService, SingleSource<T>>() {
+                    @Override
+                    public SingleSource<T> apply(IInAppBillingService billingService) throws Exception {
+                        return Single.wrap(function.apply(billingService))
+                                .subscribeOn(ioScheduler)
+                                .onErrorResumeNext(new Function<Throwable, SingleSource<T>>() {
+                                    @Override
+                                    public SingleSource<T> apply(Throwable throwable) throws Exception {
+                                        if (throwable instanceof DeadObjectException) {
+                                            // wait for reconnection, switchMap will call function again
+                                            Log.d(TAG, "Service died during the call, waiting for reconnection");
+                                            return Single.never();
+                                        }
+                                        return Single.error(throwable);
+                                    }
+                                });
+                    }
+                })
                 .firstOrError();
     }
 
+    private void prefetchBillingSupported(final IInAppBillingService billingService) {
+        ioScheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    billingSupport.isSupported(billingService, ProductType.MANAGED);
+                    billingSupport.isSupported(billingService, ProductType.SUBSCRIPTION);
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to check billing support", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Completes if billing is supported for specified product type, cached while service is bound
+     */
+    Completable checkBillingSupported(final IInAppBillingService billingService, final String productType) {
+        return Completable.fromAction(new Action() {
+            @Override
+            public void run() throws Exception {
+                if (!billingSupport.isSupported(billingService, productType)) {
+                    throw new BillingUnavailableException();
+                }
+            }
+        });
+    }
+
     Single<List<Purchase>> loadPurchasesByType(final String productType) {
-        return initialization()
-                .flatMap(new Function<IInAppBillingService, SingleSource<? extends List<Purchase>>>() {
+        return withReconnectingService(new Function<IInAppBillingService, SingleSource<List<Purchase>>>() {
+            @Override
+            public SingleSource<List<Purchase>> apply(IInAppBillingService billingService) throws Exception {
+                return checkBillingSupported(billingService, productType)
+                        .andThen(loadPurchasesByType(billingService, productType));
+            }
+        });
+    }
+
+    Single<List<Purchase>> loadPurchasesByType(IInAppBillingService billingService, String productType) {
+        return loadPurchasePagesByType(billingService, productType)
+                .collect(new Callable<List<Purchase>>() {
+                    @Override
+                    public List<Purchase> call() throws Exception {
+                        return new ArrayList<>();
+                    }
+                }, new BiConsumer<List<Purchase>, List<Purchase>>() {
                     @Override
-                    public SingleSource<? extends List<Purchase>> apply(IInAppBillingService billingService) throws Exception {
-                        return loadPurchasesByType(billingService, productType);
+                    public void accept(List<Purchase> list, List<Purchase> page) throws Exception {
+                        list.addAll(page);
                     }
                 });
     }
 
-    Single<List<Purchase>> loadPurchasesByType(IInAppBillingService billingService, String productType) {
-        return Single.create(PurchasedOnSubscribe.create(billingService, packageName, parser, productType));
+    Flowable<List<Purchase>> loadPurchasePagesByType(final String productType) {
+        return withServiceFlowable(new Function<IInAppBillingService, Publisher<List<Purchase>>>() {
+            @Override
+            public Publisher<List<Purchase>> apply(IInAppBillingService billingService) throws Exception {
+                return checkBillingSupported(billingService, productType)
+                        .andThen(loadPurchasePagesByType(billingService, productType));
+            }
+        });
+    }
+
+    Flowable<List<Purchase>> loadPurchasePagesByType(IInAppBillingService billingService, String productType) {
+        return loadRawPurchasePagesByType(billingService, productType)
+                .map(new Function<PurchasesPage, List<Purchase>>() {
+                    @Override
+                    public List<Purchase> apply(PurchasesPage page) throws Exception {
+                        return page.parse(parser);
+                    }
+                });
+    }
+
+    private Flowable<PurchasesPage> loadRawPurchasePagesByType(IInAppBillingService billingService, String productType) {
+        return PurchasedOnSubscribe.create(billingService, packageName, productType);
+    }
+
+    /**
+     * Loads purchases and puts them to cache, concurrent reloads of the same type share one request
+     */
+    Single<Map<String, Purchase>> reloadPurchases(final String productType) {
+        return purchaseReloads.get(productType, new Callable<Single<Map<String, Purchase>>>() {
+            @Override
+            public Single<Map<String, Purchase>> call() throws Exception {
+                return withReconnectingService(new Function<IInAppBillingService, SingleSource<Map<String, Purchase>>>() {
+                    @Override
+                    public SingleSource<Map<String, Purchase>> apply(IInAppBillingService billingService) throws Exception {
+                        return checkBillingSupported(billingService, productType)
+                                .andThen(loadPurchasesToCache(billingService, productType));
+                    }
+                });
+            }
+        });
     }
 
     private Observable<Map<String, Purchase>> purchasesByTypeMap(final String productType) {
-        return Single.defer(new Callable<SingleSource<? extends Map<String, Purchase>>>() {
+        Single<Map<String, Purchase>> current = Single.defer(new Callable<SingleSource<? extends Map<String, Purchase>>>() {
             @Override
             public SingleSource<? extends Map<String, Purchase>> call() throws Exception {
                 Long lastLoad = storage.get(productType + LAST_LOAD);
-                long delta = Utils.safe(lastLoad) + cacheLifetime - System.currentTimeMillis();
-                if (delta >= 0 && delta <= cacheLifetime) {
-                    Map<String, Purchase> map = storage.get(productType);
+                long age = System.currentTimeMillis() - Utils.safe(lastLoad);
+                if (age >= 0 && age <= Math.max(cacheLifetime, maxStaleness)) {
+                    Map<String, Purchase> map = purchaseStore.get(productType);
                     if (map != null) {
+                        if (age > cacheLifetime) {
+                            // stale while revalidate, changes will be emitted after reload
+                            reloadPurchases(productType).subscribe(new Consumer<Map<String, Purchase>>() {
+                                @Override
+                                public void accept(Map<String, Purchase> map) throws Exception {
+                                    Log.d(TAG, "Purchases revalidated: " + productType);
+                                }
+                            }, new Consumer<Throwable>() {
+                                @Override
+                                public void accept(Throwable throwable) throws Exception {
+                                    Log.w(TAG, "Failed to revalidate purchases", throwable);
+                                }
+                            });
+                        }
                         return Single.just(map);
                     }
                 }
-                return loadPurchasesByType(productType)
-                        .compose(toMapAndCache(productType));
-            }
-        }).toObservable().repeatWhen(new Function<Observable<Object>, ObservableSource<?>>() {
-            @Override
-            public ObservableSource<?> apply(Observable<Object> objectObservable) throws Exception {
-                return objectObservable.flatMap(new Function<Object, ObservableSource<?>>() {
-                    @Override
-                    public ObservableSource<?> apply(Object o) throws Exception {
-                        return purchasesChanged;
-                    }
-                });
+                return reloadPurchases(productType);
             }
         });
+        // changes are subscribed first to not miss ones caused by loading
+        return Observable.merge(
+                purchasesChanged(productType).debounce(CHANGES_DEBOUNCE, TimeUnit.MILLISECONDS),
+                current.toObservable()
+        ).distinctUntilChanged(SAME_PURCHASES);
     }
 
-    @NonNull
-    SingleTransformer<List<Purchase>, Map<String, Purchase>> toMapAndCache(final String productType) {
-        return new SingleTransformer<List<Purchase>, Map<String, Purchase>>() {
-            @Override
-            public SingleSource<Map<String, Purchase>> apply(Single<List<Purchase>> upstream) {
-                return upstream
-                        .flatMapObservable(new Function<List<Purchase>, ObservableSource<Purchase>>() {
-                            @Override
-                            public ObservableSource<Purchase> apply(List<Purchase> purchases) throws Exception {
-                                return Observable.fromIterable(purchases);
-                            }
-                        })
-                        .toMap(new Function<Purchase, String>() {
-                            @Override
-                            public String apply(Purchase purchase) throws Exception {
-                                return purchase.getProductId();
-                            }
-                        })
-                        .doOnSuccess(new Consumer<Map<String, Purchase>>() {
-                            @Override
-                            public void accept(Map<String, Purchase> map) throws Exception {
-                                storage.put(productType, map);
-                                storage.put(productType + LAST_LOAD, System.currentTimeMillis());
-                                purchasesChanged.onNext(0);
-                            }
-                        });
+    private Subject<Map<String, Purchase>> purchasesChanged(String productType) {
+        Subject<Map<String, Purchase>> subject = purchasesChanged.get(productType);
+        if (subject == null) {
+            subject = PublishSubject.<Map<String, Purchase>>create().toSerialized();
+            Subject<Map<String, Purchase>> existing = purchasesChanged.putIfAbsent(productType, subject);
+            if (existing != null) {
+                subject = existing;
             }
-        };
+        }
+        return subject;
     }
 
-    void putPurchaseToCache(Purchase purchase, String productType) {
-        Map<String, Purchase> map = storage.get(productType);
-        if (map == null) {
-            map = new HashMap<>();
+    private Subject<PurchaseDelta> purchaseDeltas(String productType) {
+        Subject<PurchaseDelta> subject = purchaseDeltas.get(productType);
+        if (subject == null) {
+            subject = PublishSubject.<PurchaseDelta>create().toSerialized();
+            Subject<PurchaseDelta> existing = purchaseDeltas.putIfAbsent(productType, subject);
+            if (existing != null) {
+                subject = existing;
+            }
         }
-        map.put(purchase.getProductId(), purchase);
-        storage.put(productType, map);
-        purchasesChanged.onNext(0);
+        return subject;
     }
 
-    void removePurchaseFromCache(String productId, String productType) {
-        Map<String, Purchase> map = storage.get(productType);
-        if (map != null) {
-            if (map.remove(productId) != null) {
-                storage.put(productType, map);
-            }
+    /**
+     * Notifies subscribers of specified product type with new snapshot of cached purchases
+     * and its difference from the previous one, nothing is published if snapshot was not changed.
+     * Called by {@link PurchaseStore} under its lock, so snapshots and deltas are published in order
+     */
+    private void publishPurchases(String productType, Map<String, Purchase> previous, Map<String, Purchase> current) {
+        PurchaseDelta delta = PurchaseDelta.compute(productType, previous, current);
+        if (delta.isEmpty()) {
+            return;
         }
-        purchasesChanged.onNext(0);
+        purchasesChanged(productType).onNext(current);
+        purchaseDeltas(productType).onNext(delta);
+    }
+
+    /**
+     * Loads purchases and puts them to cache. If response is the same as cached one
+     * only time of last load is updated
+     */
+    Single<Map<String, Purchase>> loadPurchasesToCache(IInAppBillingService billingService, final String productType) {
+        return loadRawPurchasePagesByType(billingService, productType)
+                .toList()
+                .map(new Function<List<PurchasesPage>, Map<String, Purchase>>() {
+                    @Override
+                    public Map<String, Purchase> apply(List<PurchasesPage> pages) throws Exception {
+                        String digest = PurchasesPage.digest(pages);
+                        if (purchaseStore.isUnchanged(productType, digest)) {
+                            storage.put(productType + LAST_LOAD, System.currentTimeMillis());
+                            stats.onRefreshSkipped();
+                            return purchaseStore.get(productType);
+                        }
+                        Map<String, Purchase> map = new HashMap<>();
+                        for (PurchasesPage page : pages) {
+                            for (Purchase purchase : page.parse(parser)) {
+                                map.put(purchase.getProductId(), purchase);
+                            }
+                        }
+                        Map<String, Object> values = new HashMap<>();
+                        values.put(productType + LAST_LOAD, System.currentTimeMillis());
+                        values.put(productType + PurchaseStore.DIGEST, digest);
+                        Map<String, Purchase> current = purchaseStore.replace(productType, map, values);
+                        stats.onRefresh();
+                        return current;
+                    }
+                });
+    }
+
+    void putPurchaseToCache(Purchase purchase, String productType) {
+        purchaseStore.put(productType, purchase);
+    }
+
+    void removePurchaseFromCache(String productId, String productType) {
+        purchaseStore.remove(productType, productId);
+    }
+
+    /**
+     * Cached purchases of specified type mapped by product id or null
+     */
+    Map<String, Purchase> getCachedPurchases(String productType) {
+        return purchaseStore.get(productType);
     }
 
     boolean checkPurchaseSubscriber() {
@@ -297,80 +684,251 @@ public class RxInApps extends ContextHolder {
     }
 
     private Single<Purchase> purchase(final String productId, final String productType) {
-        return Single.defer(new Callable<SingleSource<? extends Purchase>>() {
+        return deliver(Single.defer(new Callable<SingleSource<? extends Purchase>>() {
             @Override
             public SingleSource<? extends Purchase> call() throws Exception {
                 if (Utils.isEmpty(productId)) {
                     return Single.error(new IllegalArgumentException("Product id can't be empty"));
                 }
-                return initialization()
-                        .flatMap(new Function<IInAppBillingService, SingleSource<? extends Purchase>>() {
-                            @Override
-                            public SingleSource<? extends Purchase> apply(IInAppBillingService billingService) throws Exception {
-                                return Single.create(
+                return withService(new Function<IInAppBillingService, SingleSource<Purchase>>() {
+                    @Override
+                    public SingleSource<Purchase> apply(IInAppBillingService billingService) throws Exception {
+                        return checkBillingSupported(billingService, productType)
+                                .andThen(Single.create(
                                         PurchaseOnSubscribe.create(RxInApps.this,
                                                 billingService,
                                                 packageName,
                                                 productId,
                                                 productType,
                                                 purchaseSubscriber)
-                                );
-                            }
-                        })
-                        .doOnDispose(new Action() {
-                            @Override
-                            public void run() throws Exception {
-                                purchaseSubscriber.set(null);
-                            }
-                        });
+                                ));
+                    }
+                }).doOnDispose(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        purchaseSubscriber.set(null);
+                    }
+                });
             }
-        });
+        }));
     }
 
-    boolean bindPurchaseUnsubscribe(Cancellable cancellable) {
-        return RxUtils.setOnDispose(Utils.unwrap(purchaseSubscriber), cancellable);
+    SingleEmitter<Purchase> getPurchaseEmitter() {
+        return Utils.unwrap(purchaseSubscriber);
     }
 
-    boolean deliverPurchaseResult(Purchase purchase) {
-        return RxUtils.onSuccess(Utils.unwrap(purchaseSubscriber), purchase);
+    boolean bindPurchaseUnsubscribe(Cancellable cancellable) {
+        return RxUtils.setOnDispose(Utils.unwrap(purchaseSubscriber), cancellable);
     }
 
     boolean deliverPurchaseError(Throwable th) {
         return RxUtils.onError(Utils.unwrap(purchaseSubscriber), th);
     }
 
+    /**
+     * Computes purchase result on IO scheduler and delivers it to specified purchase subscriber
+     */
+    void deliverPurchaseResult(final SingleEmitter<Purchase> emitter, Callable<Purchase> result) {
+        Single.fromCallable(result)
+                .subscribeOn(ioScheduler)
+                .subscribe(new Consumer<Purchase>() {
+                    @Override
+                    public void accept(Purchase purchase) throws Exception {
+                        RxUtils.onSuccess(emitter, purchase);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        Log.e(TAG, "", throwable);
+                        RxUtils.onError(emitter, throwable);
+                    }
+                });
+    }
+
     /**
      * Returns {@link Observable} which emits {@link SkuDetails} of specified type
      */
     private Single<SkuDetails> getSkuDetails(final String productId, final String productType) {
+        if (skuDetailsBatching > 0) {
+            return skuDetailsBatcher(productType).get(productId);
+        }
         return getSkuDetails(Collections.singletonList(productId), productType)
                 .map(new Function<List<SkuDetails>, SkuDetails>() {
                     @Override
                     public SkuDetails apply(List<SkuDetails> skuDetails) throws Exception {
-                        return Utils.first(skuDetails);
+                        SkuDetails details = Utils.first(skuDetails);
+                        if (details == null) {
+                            throw new ProductNotFoundException(String.format("SkuDetails of \"%s\" not found!", productId));
+                        }
+                        return details;
                     }
                 });
     }
 
+    private SkuDetailsBatcher skuDetailsBatcher(final String productType) {
+        SkuDetailsBatcher batcher = skuDetailsBatchers.get(productType);
+        if (batcher == null) {
+            batcher = new SkuDetailsBatcher(new Function<List<String>, Single<List<SkuDetails>>>() {
+                @Override
+                public Single<List<SkuDetails>> apply(List<String> productIdList) throws Exception {
+                    return getSkuDetails(productIdList, productType);
+                }
+            }, skuDetailsBatching, SkuDetailsOnSubscribe.MAX_BATCH_SIZE);
+            SkuDetailsBatcher existing = skuDetailsBatchers.putIfAbsent(productType, batcher);
+            if (existing != null) {
+                batcher = existing;
+            }
+        }
+        return batcher;
+    }
+
     /**
      * Returns {@link Observable} which emits list of {@link SkuDetails} of specified type
      */
     private Single<List<SkuDetails>> getSkuDetails(final List<String> productIdList, final String productType) {
-        return Single.defer(new Callable<SingleSource<? extends List<SkuDetails>>>() {
+        return deliver(Single.defer(new Callable<SingleSource<? extends List<SkuDetails>>>() {
             @Override
             public SingleSource<? extends List<SkuDetails>> call() throws Exception {
                 if (Utils.isEmpty(productIdList)) {
                     return Single.error(new NullPointerException("Product id list can't be empty"));
                 }
-                return initialization()
-                        .flatMap(new Function<IInAppBillingService, SingleSource<List<SkuDetails>>>() {
+                final Map<String, SkuDetails> cached = skuDetailsCache.getAll(productType, productIdList);
+                final List<String> missing = missing(productIdList, cached);
+                if (missing.isEmpty()) {
+                    // served from cache without binding service
+                    return Single.just(inOrder(productIdList, cached));
+                }
+                return withReconnectingService(new Function<IInAppBillingService, SingleSource<List<SkuDetails>>>() {
+                    @Override
+                    public SingleSource<List<SkuDetails>> apply(IInAppBillingService billingService) throws Exception {
+                        return loadSkuDetails(billingService, missing, productType).toList();
+                    }
+                }).map(new Function<List<SkuDetails>, List<SkuDetails>>() {
+                    @Override
+                    public List<SkuDetails> apply(List<SkuDetails> loaded) throws Exception {
+                        if (cached.isEmpty()) {
+                            return loaded;
+                        }
+                        Map<String, SkuDetails> all = new HashMap<>(cached);
+                        for (SkuDetails details : loaded) {
+                            all.put(details.getProductId(), details);
+                        }
+                        return inOrder(productIdList, all);
+                    }
+                });
+            }
+        }).subscribeOn(ioScheduler));
+    }
+
+    /**
+     * Returns {@link Flowable} which emits cached {@link SkuDetails} of specified type at first
+     * and then others as soon as their batch is loaded
+     */
+    private Flowable<SkuDetails> streamSkuDetails(final List<String> productIdList, final String productType) {
+        return deliver(Flowable.defer(new Callable<Publisher<SkuDetails>>() {
+            @Override
+            public Publisher<SkuDetails> call() throws Exception {
+                if (Utils.isEmpty(productIdList)) {
+                    return Flowable.error(new NullPointerException("Product id list can't be empty"));
+                }
+                Map<String, SkuDetails> cached = skuDetailsCache.getAll(productType, productIdList);
+                final List<String> missing = missing(productIdList, cached);
+                Flowable<SkuDetails> fromCache = Flowable.fromIterable(inOrder(productIdList, cached));
+                if (missing.isEmpty()) {
+                    return fromCache;
+                }
+                return fromCache.concatWith(withServiceFlowable(new Function<IInAppBillingService, Publisher<SkuDetails>>() {
+                    @Override
+                    public Publisher<SkuDetails> apply(IInAppBillingService billingService) throws Exception {
+                        return loadSkuDetails(billingService, missing, productType);
+                    }
+                }));
+            }
+        }).subscribeOn(ioScheduler));
+    }
+
+    /**
+     * Loads batches of {@link SkuDetails} concurrently, each batch is retried on its own.
+     * Loaded {@link SkuDetails} are put to cache and emitted in order of batches
+     */
+    private Flowable<SkuDetails> loadSkuDetails(final IInAppBillingService billingService, List<String> productIdList, final String productType) {
+        return checkBillingSupported(billingService, productType)
+                .andThen(Flowable.fromIterable(Utils.chop(productIdList, SkuDetailsOnSubscribe.MAX_BATCH_SIZE))
+                        .concatMapEager(new Function<List<String>, Publisher<List<SkuDetails>>>() {
                             @Override
-                            public SingleSource<List<SkuDetails>> apply(IInAppBillingService billingService) throws Exception {
-                                return Single.create(new SkuDetailsOnSubscribe(billingService, packageName, parser, productIdList, productType));
+                            public Publisher<List<SkuDetails>> apply(List<String> batch) throws Exception {
+                                return Single.create(new SkuDetailsOnSubscribe(billingService, packageName, parser, batch, productType))
+                                        .subscribeOn(ioScheduler)
+                                        .toObservable()
+                                        .retryWhen(new BackoffRetry(SKU_DETAILS_RETRY_ERRORS, SKU_DETAILS_RETRY_ATTEMPTS,
+                                                SKU_DETAILS_RETRY_BASE_DELAY, SKU_DETAILS_RETRY_MAX_DELAY))
+                                        .singleOrError()
+                                        .toFlowable();
                             }
-                        });
+                        }, skuDetailsParallelism, 1))
+                .doOnNext(new Consumer<List<SkuDetails>>() {
+                    @Override
+                    public void accept(List<SkuDetails> batch) throws Exception {
+                        skuDetailsCache.putAll(productType, batch);
+                    }
+                })
+                .concatMapIterable(new Function<List<SkuDetails>, Iterable<SkuDetails>>() {
+                    @Override
+                    public Iterable<SkuDetails> apply(List<SkuDetails> batch) throws Exception {
+                        return batch;
+                    }
+                });
+    }
+
+    private static List<String> missing(List<String> productIdList, Map<String, SkuDetails> cached) {
+        List<String> missing = new ArrayList<>();
+        for (String productId : productIdList) {
+            if (!cached.containsKey(productId)) {
+                missing.add(productId);
             }
-        });
+        }
+        return missing;
+    }
+
+    private static List<SkuDetails> inOrder(List<String> productIdList, Map<String, SkuDetails> map) {
+        List<SkuDetails> list = new ArrayList<>(map.size());
+        for (String productId : productIdList) {
+            SkuDetails details = map.get(productId);
+            if (details != null) {
+                list.add(details);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Binds service and loads purchased products, subscriptions and {@link SkuDetails}
+     * specified in {@link Builder} in parallel off the caller's thread, so the following requests
+     * hit hot cache. Completes when everything is loaded
+     */
+    public Completable warmUp() {
+        return deliver(Completable.defer(new Callable<CompletableSource>() {
+            @Override
+            public CompletableSource call() throws Exception {
+                List<Completable> tasks = new ArrayList<>();
+                tasks.add(reloadPurchases(ProductType.MANAGED).ignoreElement());
+                tasks.add(reloadPurchases(ProductType.SUBSCRIPTION).ignoreElement());
+                if (!Utils.isEmpty(warmUpProducts)) {
+                    tasks.add(getSkuDetails(warmUpProducts, ProductType.MANAGED).ignoreElement());
+                }
+                if (!Utils.isEmpty(warmUpSubscriptions)) {
+                    tasks.add(getSkuDetails(warmUpSubscriptions, ProductType.SUBSCRIPTION).ignoreElement());
+                }
+                return Completable.mergeDelayError(tasks);
+            }
+        }).subscribeOn(ioScheduler));
+    }
+
+    /**
+     * Emits added, removed and updated purchases of specified type each time cached purchases are changed
+     */
+    public Observable<PurchaseDelta> purchaseChanges(@ProductType.Annotation String productType) {
+        return deliver(purchaseDeltas(productType).hide());
     }
 
     /*
@@ -381,14 +939,21 @@ public class RxInApps extends ContextHolder {
      * Simply loads purchased products and emits them
      */
     public Single<List<Purchase>> loadPurchasedProducts() {
-        return loadPurchasesByType(ProductType.MANAGED);
+        return deliver(loadPurchasesByType(ProductType.MANAGED));
+    }
+
+    /**
+     * Loads purchased products page by page, next page is loaded when requested by downstream
+     */
+    public Flowable<List<Purchase>> loadPurchasedProductPages() {
+        return deliver(loadPurchasePagesByType(ProductType.MANAGED));
     }
 
     /**
      * Loads or takes from cache purchased products and maps them by product id
      */
     public Observable<Map<String, Purchase>> purchasedProductsMap() {
-        return purchasesByTypeMap(ProductType.MANAGED);
+        return deliver(purchasesByTypeMap(ProductType.MANAGED));
     }
 
     /**
@@ -458,36 +1023,34 @@ public class RxInApps extends ContextHolder {
      * Consume purchased product
      */
     public Single<Purchase> consume(final String productId) {
-        return Single.defer(new Callable<SingleSource<? extends Purchase>>() {
+        return deliver(Single.defer(new Callable<SingleSource<? extends Purchase>>() {
             @Override
             public SingleSource<? extends Purchase> call() throws Exception {
                 if (Utils.isEmpty(productId)) {
                     return Single.error(new IllegalArgumentException("Product id can't be empty"));
                 }
-                return initialization()
-                        .flatMap(new Function<IInAppBillingService, SingleSource<Purchase>>() {
-                            @Override
-                            public SingleSource<Purchase> apply(final IInAppBillingService billingService) throws Exception {
-                                return loadPurchasesByType(billingService, ProductType.MANAGED)
-                                        .compose(toMapAndCache(ProductType.MANAGED))
-                                        .flatMap(new Function<Map<String, Purchase>, SingleSource<Purchase>>() {
-                                            @Override
-                                            public SingleSource<Purchase> apply(Map<String, Purchase> map) throws Exception {
-                                                return Single.create(
-                                                        ConsumePurchaseOnSubscribe.create(
-                                                                RxInApps.this,
-                                                                billingService,
-                                                                packageName,
-                                                                map,
-                                                                productId
-                                                        )
-                                                );
-                                            }
-                                        });
-                            }
-                        });
+                return withService(new Function<IInAppBillingService, SingleSource<Purchase>>() {
+                    @Override
+                    public SingleSource<Purchase> apply(final IInAppBillingService billingService) throws Exception {
+                        return loadPurchasesToCache(billingService, ProductType.MANAGED)
+                                .flatMap(new Function<Map<String, Purchase>, SingleSource<Purchase>>() {
+                                    @Override
+                                    public SingleSource<Purchase> apply(Map<String, Purchase> map) throws Exception {
+                                        return Single.create(
+                                                ConsumePurchaseOnSubscribe.create(
+                                                        RxInApps.this,
+                                                        billingService,
+                                                        packageName,
+                                                        map,
+                                                        productId
+                                                )
+                                        );
+                                    }
+                                });
+                    }
+                });
             }
-        });
+        }));
     }
 
     /**
@@ -504,6 +1067,14 @@ public class RxInApps extends ContextHolder {
         return getSkuDetails(productIdList, ProductType.MANAGED);
     }
 
+    /**
+     * Emits {@link SkuDetails} of managed products for specified product ids one by one
+     * as soon as they are loaded
+     */
+    public Flowable<SkuDetails> streamProducts(List<String> productIdList) {
+        return streamSkuDetails(productIdList, ProductType.MANAGED);
+    }
+
     /*
      * --------------------------------------- SUBSCRIPTIONS ---------------------------------------
      */
@@ -512,14 +1083,21 @@ public class RxInApps extends ContextHolder {
      * Simply loads purchased subscriptions and emits them
      */
     public Single<List<Purchase>> loadPurchasedSubscriptions() {
-        return loadPurchasesByType(ProductType.SUBSCRIPTION);
+        return deliver(loadPurchasesByType(ProductType.SUBSCRIPTION));
+    }
+
+    /**
+     * Loads purchased subscriptions page by page, next page is loaded when requested by downstream
+     */
+    public Flowable<List<Purchase>> loadPurchasedSubscriptionPages() {
+        return deliver(loadPurchasePagesByType(ProductType.SUBSCRIPTION));
     }
 
     /**
      * Loads or takes from cache purchased subscriptions and maps them by product id
      */
     public Observable<Map<String, Purchase>> purchasedSubscriptionsMap() {
-        return purchasesByTypeMap(ProductType.SUBSCRIPTION);
+        return deliver(purchasesByTypeMap(ProductType.SUBSCRIPTION));
     }
 
     /**
@@ -599,14 +1177,61 @@ public class RxInApps extends ContextHolder {
         return getSkuDetails(productIdList, ProductType.SUBSCRIPTION);
     }
 
+    /**
+     * Emits {@link SkuDetails} of subscriptions for specified product's ids one by one
+     * as soon as they are loaded
+     */
+    public Flowable<SkuDetails> streamSubscriptions(List<String> productIdList) {
+        return streamSkuDetails(productIdList, ProductType.SUBSCRIPTION);
+    }
+
+    static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + "-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Lazily created pool for signature verification
+     */
+    private static final class VerifyPool {
+        static final int THREADS = Runtime.getRuntime().availableProcessors();
+        static final Scheduler SCHEDULER = Schedulers.from(Executors.newFixedThreadPool(THREADS, daemonThreadFactory("verify")));
+    }
+
     public static class Builder {
+        private static final int IO_THREADS = 4;
+        private static final int VERIFICATION_CACHE_SIZE = 256;
+        private static final int SKU_DETAILS_CACHE_SIZE = 200;
+
         private Context context;
         private Parser parser;
         private String licenseKey;
         private String merchantId;
 
         private Long cacheLifetime;
+        private Long maxStaleness;
+        private int verificationCacheSize = VERIFICATION_CACHE_SIZE;
+        private Long skuDetailsCacheLifetime;
+        private int skuDetailsCacheSize = SKU_DETAILS_CACHE_SIZE;
+        private int skuDetailsParallelism = IO_THREADS;
+        private long skuDetailsBatching;
+        private long writeBehind;
+        private boolean persistVerification;
+        private Long connectionLinger;
         private Storage storage;
+        private Scheduler ioScheduler;
+        private Scheduler resultScheduler;
+        private boolean warmUp;
+        private List<String> warmUpProducts;
+        private List<String> warmUpSubscriptions;
 
         public Builder(Context context) {
             this.context = context.getApplicationContext();
@@ -625,8 +1250,9 @@ public class RxInApps extends ContextHolder {
         }
 
         Storage getStorage() {
-            if (storage == null) {
-                return new HawkStorage(context, parser);
+            Storage storage = this.storage == null ? new HawkStorage(context, parser) : this.storage;
+            if (writeBehind > 0) {
+                return new WriteBehindStorage(storage, writeBehind, Schedulers.io());
             } else {
                 return storage;
             }
@@ -648,6 +1274,74 @@ public class RxInApps extends ContextHolder {
             }
         }
 
+        long getSkuDetailsCacheLifetime() {
+            if (skuDetailsCacheLifetime == null) {
+                return TimeUnit.HOURS.toMillis(1);
+            } else {
+                return skuDetailsCacheLifetime;
+            }
+        }
+
+        int getSkuDetailsCacheSize() {
+            return skuDetailsCacheSize;
+        }
+
+        int getSkuDetailsParallelism() {
+            return skuDetailsParallelism;
+        }
+
+        long getSkuDetailsBatching() {
+            return skuDetailsBatching;
+        }
+
+        long getMaxStaleness() {
+            if (maxStaleness == null) {
+                return 0;
+            } else {
+                return maxStaleness;
+            }
+        }
+
+        long getConnectionLinger() {
+            if (connectionLinger == null) {
+                return TimeUnit.SECONDS.toMillis(30);
+            } else {
+                return connectionLinger;
+            }
+        }
+
+        Scheduler getIoScheduler() {
+            if (ioScheduler == null) {
+                return Schedulers.from(Executors.newFixedThreadPool(IO_THREADS, daemonThreadFactory("io")));
+            } else {
+                return ioScheduler;
+            }
+        }
+
+        int getVerificationCacheSize() {
+            return verificationCacheSize;
+        }
+
+        boolean isPersistVerification() {
+            return persistVerification;
+        }
+
+        Scheduler getResultScheduler() {
+            return resultScheduler;
+        }
+
+        boolean isWarmUp() {
+            return warmUp;
+        }
+
+        List<String> getWarmUpProducts() {
+            return warmUpProducts;
+        }
+
+        List<String> getWarmUpSubscriptions() {
+            return warmUpSubscriptions;
+        }
+
         /**
          * Parser for {@link SkuDetails} and {@link Purchase} data models
          */
@@ -664,6 +1358,17 @@ public class RxInApps extends ContextHolder {
             return this;
         }
 
+        /**
+         * Enables write-behind of storage: written values are readable immediately and written
+         * to storage in background, writes made within specified window are coalesced.
+         * Writes of the last window may be lost if process dies, see {@link RxInApps#flushStorage()}.
+         * By default it is disabled
+         */
+        public Builder writeBehind(long window, TimeUnit timeUnit) {
+            this.writeBehind = timeUnit.toMillis(window);
+            return this;
+        }
+
         // TODO: add log interceptor
 
         /**
@@ -686,6 +1391,25 @@ public class RxInApps extends ContextHolder {
             return this;
         }
 
+        /**
+         * Max number of signature verification verdicts kept in memory, by default {@value #VERIFICATION_CACHE_SIZE}
+         */
+        public Builder verificationCacheSize(int size) {
+            this.verificationCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Keeps signature verification verdicts in {@link Storage}, so purchases verified once
+         * are not verified again after process restart. Only the verdicts held in memory
+         * are persisted, see {@link #verificationCacheSize(int)}. New verdicts are written
+         * in background, at most once per second
+         */
+        public Builder persistVerification(boolean enabled) {
+            this.persistVerification = enabled;
+            return this;
+        }
+
         /**
          * Lifetime of purchases cache
          */
@@ -693,5 +1417,100 @@ public class RxInApps extends ContextHolder {
             this.cacheLifetime = timeUnit.toMillis(value);
             return this;
         }
+
+        /**
+         * Lifetime of {@link SkuDetails} cache, zero disables caching
+         */
+        public Builder skuDetailsCacheLifetime(long value, TimeUnit timeUnit) {
+            this.skuDetailsCacheLifetime = timeUnit.toMillis(value);
+            return this;
+        }
+
+        /**
+         * Max number of {@link SkuDetails} kept in memory, by default {@value #SKU_DETAILS_CACHE_SIZE}
+         */
+        public Builder skuDetailsCacheSize(int size) {
+            this.skuDetailsCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Max number of concurrent {@code getSkuDetails} calls, each call loads up to 20 products.
+         * By default it is {@value #IO_THREADS}
+         */
+        public Builder skuDetailsParallelism(int parallelism) {
+            this.skuDetailsParallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Enables batching of {@link RxInApps#getProduct(String)} and {@link RxInApps#getSubscription(String)}:
+         * products requested within specified window are loaded by one call of up to 20 products.
+         * By default it is disabled
+         */
+        public Builder skuDetailsBatching(long window, TimeUnit timeUnit) {
+            this.skuDetailsBatching = timeUnit.toMillis(window);
+            return this;
+        }
+
+        /**
+         * Enables stale-while-revalidate mode of purchases cache. When cache is older than
+         * {@link #cacheLifetime(long, TimeUnit)} but not older than specified max staleness
+         * cached purchases are emitted immediately and reloaded in background,
+         * changed purchases are emitted after reload.
+         * Older cache is reloaded before emission
+         */
+        public Builder staleWhileRevalidate(long maxStaleness, TimeUnit timeUnit) {
+            this.maxStaleness = timeUnit.toMillis(maxStaleness);
+            return this;
+        }
+
+        /**
+         * Scheduler for calls of InAppBillingService, by default it is bounded pool of {@value #IO_THREADS} threads
+         */
+        public Builder ioScheduler(Scheduler scheduler) {
+            this.ioScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Scheduler for delivering results, by default results are delivered on IO scheduler
+         */
+        public Builder resultScheduler(Scheduler scheduler) {
+            this.resultScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Enables {@link RxInApps#warmUp()} right after {@link RxInApps#init(Builder)}
+         */
+        public Builder warmUp(boolean enabled) {
+            this.warmUp = enabled;
+            return this;
+        }
+
+        /**
+         * Managed products which {@link SkuDetails} should be loaded during warm up
+         */
+        public Builder warmUpProducts(List<String> productIdList) {
+            this.warmUpProducts = productIdList;
+            return this;
+        }
+
+        /**
+         * Subscriptions which {@link SkuDetails} should be loaded during warm up
+         */
+        public Builder warmUpSubscriptions(List<String> productIdList) {
+            this.warmUpSubscriptions = productIdList;
+            return this;
+        }
+
+        /**
+         * Duration for which service stays bound after the last request
+         */
+        public Builder connectionLinger(long value, TimeUnit timeUnit) {
+            this.connectionLinger = timeUnit.toMillis(value);
+            return this;
+        }
     }
 }
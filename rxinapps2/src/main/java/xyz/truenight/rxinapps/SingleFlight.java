@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Action;
+
+/**
+ * Shares one in-flight {@link Single} per key between all concurrent subscribers
+ */
+class SingleFlight<K, T> {
+
+    private final Map<K, Single<T>> inFlight = new HashMap<>();
+
+    /**
+     * Returns {@link Single} which subscribes to source created by factory only if there is no
+     * in-flight request for the same key, otherwise it joins the in-flight one
+     */
+    Single<T> get(final K key, final Callable<Single<T>> factory) {
+        return Single.defer(new Callable<SingleSource<? extends T>>() {
+            @Override
+            public SingleSource<? extends T> call() throws Exception {
+                synchronized (inFlight) {
+                    Single<T> single = inFlight.get(key);
+                    if (single == null) {
+                        single = factory.call()
+                                .doFinally(new Action() {
+                                    @Override
+                                    public void run() throws Exception {
+                                        synchronized (inFlight) {
+                                            inFlight.remove(key);
+                                        }
+                                    }
+                                })
+                                .cache();
+                        inFlight.put(key, single);
+                    }
+                    return single;
+                }
+            }
+        });
+    }
+}
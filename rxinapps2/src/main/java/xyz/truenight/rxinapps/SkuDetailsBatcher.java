@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+import xyz.truenight.rxinapps.exception.ProductNotFoundException;
+import xyz.truenight.rxinapps.model.SkuDetails;
+
+/**
+ * Collects requests of single {@link SkuDetails} arriving within time window and loads them
+ * by one call. Window is closed earlier when it has max number of distinct product ids
+ */
+class SkuDetailsBatcher {
+
+    private final Function<List<String>, Single<List<SkuDetails>>> loader;
+    private final long window;
+    private final int maxSize;
+
+    private final Object lock = new Object();
+    private Map<String, SingleSubject<SkuDetails>> pending;
+    private Disposable timer;
+
+    /**
+     * @param loader loads {@link SkuDetails} of list of product ids
+     * @param window time window in milliseconds
+     */
+    SkuDetailsBatcher(Function<List<String>, Single<List<SkuDetails>>> loader, long window, int maxSize) {
+        this.loader = loader;
+        this.window = window;
+        this.maxSize = maxSize;
+    }
+
+    Single<SkuDetails> get(final String productId) {
+        return Single.defer(new Callable<SingleSource<SkuDetails>>() {
+            @Override
+            public SingleSource<SkuDetails> call() throws Exception {
+                SingleSubject<SkuDetails> subject;
+                Map<String, SingleSubject<SkuDetails>> batch = null;
+                synchronized (lock) {
+                    if (pending == null) {
+                        pending = new LinkedHashMap<>();
+                        timer = Schedulers.computation().scheduleDirect(new Runnable() {
+                            @Override
+                            public void run() {
+                                flush();
+                            }
+                        }, window, TimeUnit.MILLISECONDS);
+                    }
+                    // duplicate ids within window share one result
+                    subject = pending.get(productId);
+                    if (subject == null) {
+                        subject = SingleSubject.create();
+                        pending.put(productId, subject);
+                    }
+                    if (pending.size() >= maxSize) {
+                        batch = take();
+                    }
+                }
+                if (batch != null) {
+                    load(batch);
+                }
+                return subject;
+            }
+        });
+    }
+
+    private void flush() {
+        Map<String, SingleSubject<SkuDetails>> batch;
+        synchronized (lock) {
+            batch = take();
+        }
+        if (batch != null) {
+            load(batch);
+        }
+    }
+
+    private Map<String, SingleSubject<SkuDetails>> take() {
+        Map<String, SingleSubject<SkuDetails>> batch = pending;
+        pending = null;
+        if (timer != null) {
+            timer.dispose();
+            timer = null;
+        }
+        return batch;
+    }
+
+    private void load(final Map<String, SingleSubject<SkuDetails>> batch) {
+        Single<List<SkuDetails>> single;
+        try {
+            single = loader.apply(new ArrayList<>(batch.keySet()));
+        } catch (Exception e) {
+            single = Single.error(e);
+        }
+        single.subscribe(new BiConsumer<List<SkuDetails>, Throwable>() {
+            @Override
+            public void accept(List<SkuDetails> skuDetails, Throwable throwable) throws Exception {
+                if (throwable != null) {
+                    for (SingleSubject<SkuDetails> subject : batch.values()) {
+                        subject.onError(throwable);
+                    }
+                    return;
+                }
+                Map<String, SkuDetails> map = new HashMap<>();
+                for (SkuDetails details : skuDetails) {
+                    map.put(details.getProductId(), details);
+                }
+                for (Map.Entry<String, SingleSubject<SkuDetails>> entry : batch.entrySet()) {
+                    SkuDetails details = map.get(entry.getKey());
+                    if (details != null) {
+                        entry.getValue().onSuccess(details);
+                    } else {
+                        entry.getValue().onError(new ProductNotFoundException(
+                                String.format("SkuDetails of \"%s\" not found!", entry.getKey())));
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import xyz.truenight.rxinapps.model.SkuDetails;
+import xyz.truenight.rxinapps.util.Storage;
+
+/**
+ * Bounded LRU cache of {@link SkuDetails} keyed by product type and product id.
+ * Entries expire after lifetime. Prices and titles are localized, so entries are bound to current locale.
+ * <p>
+ * Cache is persisted as one record holding fresh entries of current locale, so persisted
+ * entries are bounded by the same size and dropped on eviction, expiration and locale change
+ */
+class SkuDetailsCache {
+
+    private static final String KEY = "SKU_DETAILS";
+
+    private final Storage storage;
+    private final long lifetime;
+    private final Map<String, Entry> entries;
+    private final Object writeLock = new Object();
+    private String locale;
+    private boolean loaded;
+
+    SkuDetailsCache(Storage storage, long lifetime, final int maxSize) {
+        this.storage = storage;
+        this.lifetime = lifetime;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return lifetime > 0;
+    }
+
+    /**
+     * Returns not expired {@link SkuDetails} of specified products mapped by product id
+     */
+    Map<String, SkuDetails> getAll(String productType, List<String> productIdList) {
+        Map<String, SkuDetails> result = new LinkedHashMap<>();
+        if (!isEnabled()) {
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            prepare();
+            for (String productId : productIdList) {
+                String key = key(productType, productId);
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.isFresh(now, lifetime)) {
+                    result.put(productId, entry.details);
+                } else {
+                    // dropped from storage by next write
+                    entries.remove(key);
+                }
+            }
+        }
+        return result;
+    }
+
+    void putAll(String productType, List<SkuDetails> skuDetails) {
+        if (!isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // snapshots are written in the order they are taken
+        synchronized (writeLock) {
+            Snapshot snapshot;
+            synchronized (this) {
+                prepare();
+                for (SkuDetails details : skuDetails) {
+                    entries.put(key(productType, details.getProductId()), new Entry(details, now));
+                }
+                snapshot = new Snapshot(locale, entries, now, lifetime);
+            }
+            storage.put(KEY, snapshot);
+        }
+    }
+
+    /**
+     * Restores persisted entries on first access and drops entries of previous locale
+     */
+    private void prepare() {
+        String current = Locale.getDefault().toString();
+        if (!loaded) {
+            loaded = true;
+            Snapshot snapshot = storage.get(KEY);
+            if (snapshot != null && snapshot.entries != null && current.equals(snapshot.locale)) {
+                // restored in access order, so the least recently used are evicted first
+                entries.putAll(snapshot.entries);
+            }
+        } else if (!current.equals(locale)) {
+            // localized entries of previous locale are useless
+            entries.clear();
+        }
+        locale = current;
+    }
+
+    private static String key(String productType, String productId) {
+        return productType + ":" + productId;
+    }
+
+    private static class Entry {
+        SkuDetails details;
+        long loadTime;
+
+        Entry() {
+        }
+
+        Entry(SkuDetails details, long loadTime) {
+            this.details = details;
+            this.loadTime = loadTime;
+        }
+
+        boolean isFresh(long now, long lifetime) {
+            long age = now - loadTime;
+            return age >= 0 && age <= lifetime;
+        }
+    }
+
+    static class Snapshot {
+        String locale;
+        LinkedHashMap<String, Entry> entries;
+
+        Snapshot() {
+        }
+
+        Snapshot(String locale, Map<String, Entry> entries, long now, long lifetime) {
+            this.locale = locale;
+            this.entries = new LinkedHashMap<>();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().isFresh(now, lifetime)) {
+                    this.entries.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+}
@@ -30,12 +30,16 @@ import xyz.truenight.rxinapps.exception.LoadFailedException;
 import xyz.truenight.rxinapps.model.SkuDetails;
 import xyz.truenight.rxinapps.util.Constants;
 import xyz.truenight.rxinapps.util.Parser;
-import xyz.truenight.utils.Utils;
 
+/**
+ * Loads {@link SkuDetails} of single batch of products, size of batch should not exceed {@value #MAX_BATCH_SIZE}
+ */
 class SkuDetailsOnSubscribe implements SingleOnSubscribe<List<SkuDetails>> {
 
     private static final String TAG = RxInApps.TAG;
 
+    static final int MAX_BATCH_SIZE = 20;
+
     private IInAppBillingService billingService;
     private String packageName;
     private Parser parser;
@@ -62,26 +66,23 @@ class SkuDetailsOnSubscribe implements SingleOnSubscribe<List<SkuDetails>> {
     @Override
     public void subscribe(SingleEmitter<List<SkuDetails>> emitter) throws Exception {
         try {
-            List<List<String>> batches = Utils.chop(productIdList, 20);
-            List<SkuDetails> skuDetails = new ArrayList<>();
-            for (List<String> batch : batches) {
-                Bundle products = new Bundle();
-                products.putStringArrayList(Constants.PRODUCTS_LIST, toArrayList(batch));
-                Bundle skuBundle =
-                        billingService.getSkuDetails(Constants.API_VERSION, packageName, productType, products);
-                int response = skuBundle.getInt(Constants.RESPONSE_CODE);
+            Bundle products = new Bundle();
+            products.putStringArrayList(Constants.PRODUCTS_LIST, toArrayList(productIdList));
+            Bundle skuBundle =
+                    billingService.getSkuDetails(Constants.API_VERSION, packageName, productType, products);
+            int response = skuBundle.getInt(Constants.RESPONSE_CODE);
 
-                if (response == Constants.RESULT_OK) {
-                    List<String> detailsList = skuBundle.getStringArrayList(Constants.DETAILS_LIST);
-                    if (detailsList != null) {
-                        for (String responseLine : detailsList) {
-                            SkuDetails product = parser.fromString(responseLine, SkuDetails.class);
-                            skuDetails.add(product);
-                        }
+            List<SkuDetails> skuDetails = new ArrayList<>();
+            if (response == Constants.RESULT_OK) {
+                List<String> detailsList = skuBundle.getStringArrayList(Constants.DETAILS_LIST);
+                if (detailsList != null) {
+                    for (String responseLine : detailsList) {
+                        SkuDetails product = parser.fromString(responseLine, SkuDetails.class);
+                        skuDetails.add(product);
                     }
-                } else {
-                    throw new LoadFailedException("Failed to get sku details: RESPONSE_CODE=" + response);
                 }
+            } else {
+                throw new LoadFailedException("Failed to get sku details: RESPONSE_CODE=" + response, response);
             }
             emitter.onSuccess(skuDetails);
         } catch (Exception e) {
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps;
+
+import android.util.Log;
+
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Scheduler;
+import xyz.truenight.rxinapps.util.PurchaseVerifier;
+import xyz.truenight.rxinapps.util.Storage;
+
+/**
+ * Bounded LRU cache of signature verification verdicts. Verdict of purchase data and signature
+ * never changes under the same license key, so it is keyed by digest of data, signature and key.
+ * <p>
+ * Verdicts are persisted as one record holding the whole LRU, so persisted set is bounded too.
+ * New verdicts are written in background, all verdicts made within {@link #PERSIST_DELAY}
+ * are written at once
+ */
+class VerificationCache {
+
+    private static final String TAG = RxInApps.TAG;
+
+    private static final String KEY = "VERIFIED";
+    private static final long PERSIST_DELAY = 1000; // milliseconds
+
+    private final PurchaseVerifier verifier;
+    private final String keyFingerprint;
+    private final Storage storage;
+    private final Scheduler scheduler;
+    private final AtomicBoolean persistScheduled = new AtomicBoolean();
+    private final BillingStats stats;
+    private final Map<String, Boolean> verdicts;
+    private boolean loaded;
+    private boolean dirty;
+
+    /**
+     * @param storage   storage for persisting verdicts or null if verdicts are kept in memory only
+     * @param scheduler scheduler for background writes of verdicts
+     */
+    VerificationCache(PurchaseVerifier verifier, String licenseKey, final int maxSize, Storage storage,
+                      Scheduler scheduler, BillingStats stats) {
+        this.verifier = verifier;
+        this.storage = storage;
+        this.scheduler = scheduler;
+        this.stats = stats;
+        MessageDigest digest = Digests.sha256();
+        Digests.update(digest, licenseKey);
+        this.keyFingerprint = Digests.hex(digest.digest());
+        this.verdicts = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    boolean verifyPurchase(String productId, String signedData, String signature) {
+        String key = key(signedData, signature);
+        Boolean verdict;
+        synchronized (verdicts) {
+            load();
+            verdict = verdicts.get(key);
+        }
+        if (verdict != null) {
+            stats.onVerificationHit();
+            return verdict;
+        }
+        stats.onVerificationMiss();
+        boolean valid = verifier.verifyPurchase(productId, signedData, signature);
+        synchronized (verdicts) {
+            verdicts.put(key, valid);
+            dirty = true;
+        }
+        schedulePersist();
+        return valid;
+    }
+
+    private void schedulePersist() {
+        if (storage != null && persistScheduled.compareAndSet(false, true)) {
+            scheduler.scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    persistScheduled.set(false);
+                    persist();
+                }
+            }, PERSIST_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes verdicts by one put if there are new ones
+     */
+    private void persist() {
+        if (storage == null) {
+            return;
+        }
+        Snapshot snapshot;
+        synchronized (verdicts) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            snapshot = new Snapshot(verdicts);
+        }
+        try {
+            storage.put(KEY, snapshot);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist verification verdicts", e);
+        }
+    }
+
+    private void load() {
+        if (loaded || storage == null) {
+            return;
+        }
+        loaded = true;
+        Snapshot snapshot = storage.get(KEY);
+        if (snapshot != null && snapshot.verdicts != null) {
+            // restored in access order, so the least recently used are evicted first
+            for (Map.Entry<String, Boolean> entry : snapshot.verdicts.entrySet()) {
+                if (!verdicts.containsKey(entry.getKey())) {
+                    verdicts.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private String key(String signedData, String signature) {
+        MessageDigest digest = Digests.sha256();
+        Digests.update(digest, signedData);
+        Digests.update(digest, signature);
+        Digests.update(digest, keyFingerprint);
+        return Digests.hex(digest.digest());
+    }
+
+    static class Snapshot {
+        LinkedHashMap<String, Boolean> verdicts;
+
+        Snapshot() {
+        }
+
+        Snapshot(Map<String, Boolean> verdicts) {
+            this.verdicts = new LinkedHashMap<>(verdicts);
+        }
+    }
+}
@@ -5,6 +5,9 @@ package xyz.truenight.rxinapps.exception;
  */
 
 public class LoadFailedException extends InAppBillingException {
+
+    private int responseCode = -1;
+
     public LoadFailedException() {
     }
 
@@ -12,6 +15,11 @@ public class LoadFailedException extends InAppBillingException {
         super(detailMessage);
     }
 
+    public LoadFailedException(String detailMessage, int responseCode) {
+        super(detailMessage);
+        this.responseCode = responseCode;
+    }
+
     public LoadFailedException(String detailMessage, Throwable throwable) {
         super(detailMessage, throwable);
     }
@@ -19,4 +27,11 @@ public class LoadFailedException extends InAppBillingException {
     public LoadFailedException(Throwable throwable) {
         super(throwable);
     }
+
+    /**
+     * Response code of billing service or -1 if load failed for other reason
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
 }
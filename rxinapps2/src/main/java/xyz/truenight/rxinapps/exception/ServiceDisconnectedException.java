@@ -0,0 +1,11 @@
+package xyz.truenight.rxinapps.exception;
+
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ */
+
+public class ServiceDisconnectedException extends InAppBillingException {
+    public ServiceDisconnectedException() {
+        super("InAppBillingService was disconnected");
+    }
+}
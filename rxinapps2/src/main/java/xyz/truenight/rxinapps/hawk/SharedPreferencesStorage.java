@@ -8,6 +8,7 @@ import com.orhanobut.hawk.Storage;
 public final class SharedPreferencesStorage implements Storage {
 
     private final SharedPreferences preferences;
+    private final ThreadLocal<SharedPreferences.Editor> batch = new ThreadLocal<>();
 
     public SharedPreferencesStorage(Context context, String tag) {
         preferences = context.getSharedPreferences(tag, Context.MODE_PRIVATE);
@@ -20,6 +21,11 @@ public final class SharedPreferencesStorage implements Storage {
     @Override
     public <T> boolean put(String key, T value) {
         checkNull("key", key);
+        SharedPreferences.Editor editor = batch.get();
+        if (editor != null) {
+            editor.putString(key, String.valueOf(value));
+            return true;
+        }
         return getEditor().putString(key, String.valueOf(value)).commit();
     }
 
@@ -31,6 +37,11 @@ public final class SharedPreferencesStorage implements Storage {
 
     @Override
     public boolean delete(String key) {
+        SharedPreferences.Editor editor = batch.get();
+        if (editor != null) {
+            editor.remove(key);
+            return true;
+        }
         return getEditor().remove(key).commit();
     }
 
@@ -49,6 +60,24 @@ public final class SharedPreferencesStorage implements Storage {
         return preferences.getAll().size();
     }
 
+    /**
+     * Following puts and deletes of current thread are collected until {@link #commitBatch()}
+     */
+    public void beginBatch() {
+        if (batch.get() == null) {
+            batch.set(getEditor());
+        }
+    }
+
+    /**
+     * Writes puts and deletes collected since {@link #beginBatch()} by one commit
+     */
+    public boolean commitBatch() {
+        SharedPreferences.Editor editor = batch.get();
+        batch.remove();
+        return editor == null || editor.commit();
+    }
+
     private SharedPreferences.Editor getEditor() {
         return preferences.edit();
     }
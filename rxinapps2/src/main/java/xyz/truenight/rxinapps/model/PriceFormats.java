@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.model;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared price formatters keyed by locale and currency
+ */
+final class PriceFormats {
+
+    private static final String RUB = "RUB";
+
+    private static final ConcurrentMap<String, NumberFormat> FORMATS = new ConcurrentHashMap<>();
+
+    private PriceFormats() {
+    }
+
+    static String format(BigDecimal value, String currency) {
+        Locale locale = Locale.getDefault();
+        String key = locale + ":" + currency;
+        NumberFormat format = FORMATS.get(key);
+        if (format == null) {
+            format = create(locale, currency);
+            NumberFormat existing = FORMATS.putIfAbsent(key, format);
+            if (existing != null) {
+                format = existing;
+            }
+        }
+        String text;
+        // NumberFormat is not thread safe
+        synchronized (format) {
+            text = format.format(value);
+        }
+        return RUB.equals(currency) ? text + " \u20BD" : text;
+    }
+
+    private static NumberFormat create(Locale locale, String currency) {
+        if (RUB.equals(currency)) {
+            NumberFormat format = NumberFormat.getNumberInstance(locale);
+            format.setMinimumFractionDigits(0);
+            format.setMaximumFractionDigits(2);
+            return format;
+        } else {
+            NumberFormat format = NumberFormat.getCurrencyInstance(locale);
+            format.setCurrency(Currency.getInstance(currency));
+            return format;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import xyz.truenight.utils.Utils;
+
+/**
+ * Difference between two snapshots of purchases of the same type, purchases are matched by purchase token
+ */
+public class PurchaseDelta {
+
+    private final String productType;
+    private final List<Purchase> added;
+    private final List<Purchase> removed;
+    private final List<Purchase> updated;
+
+    private PurchaseDelta(String productType, List<Purchase> added, List<Purchase> removed, List<Purchase> updated) {
+        this.productType = productType;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.updated = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * Computes difference between previous and current snapshots, any of them can be NULL
+     */
+    public static PurchaseDelta compute(String productType, Map<String, Purchase> previous, Map<String, Purchase> current) {
+        Map<String, Purchase> previousByToken = new HashMap<>();
+        if (previous != null) {
+            for (Purchase purchase : previous.values()) {
+                previousByToken.put(keyOf(purchase), purchase);
+            }
+        }
+        List<Purchase> added = new ArrayList<>();
+        List<Purchase> updated = new ArrayList<>();
+        if (current != null) {
+            for (Purchase purchase : current.values()) {
+                Purchase old = previousByToken.remove(keyOf(purchase));
+                if (old == null) {
+                    added.add(purchase);
+                } else if (!Utils.equal(old.getRawResponse(), purchase.getRawResponse())
+                        || !Utils.equal(old.getPurchaseSignature(), purchase.getPurchaseSignature())) {
+                    updated.add(purchase);
+                }
+            }
+        }
+        return new PurchaseDelta(productType, added, new ArrayList<>(previousByToken.values()), updated);
+    }
+
+    private static String keyOf(Purchase purchase) {
+        // test purchases may have no token
+        return purchase.getPurchaseToken() != null ? purchase.getPurchaseToken() : purchase.getProductId();
+    }
+
+    @ProductType.Annotation
+    public String getProductType() {
+        return productType;
+    }
+
+    /**
+     * Purchases which are present only in current snapshot
+     */
+    public List<Purchase> getAdded() {
+        return added;
+    }
+
+    /**
+     * Purchases which are present only in previous snapshot
+     */
+    public List<Purchase> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Purchases which data or signature was changed, taken from current snapshot
+     */
+    public List<Purchase> getUpdated() {
+        return updated;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PurchaseDelta{" +
+                "productType='" + productType + '\'' +
+                ", added=" + added.size() +
+                ", removed=" + removed.size() +
+                ", updated=" + updated.size() +
+                '}';
+    }
+}
@@ -20,11 +20,6 @@ import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.NumberFormat;
-import java.util.Currency;
-
-import xyz.truenight.utils.Utils;
 
 public class SkuDetails {
 
@@ -36,7 +31,7 @@ public class SkuDetails {
     public static final String FIELD_PRICE_AMOUNT_MICROS = "price_amount_micros";
     public static final String FIELD_PRICE = "price";
 
-    private static final BigDecimal MILLION = BigDecimal.valueOf(1000000);
+    private static final int MICROS_SCALE = 6;
 
     @SerializedName(FIELD_PRODUCT_ID)
     private String productId;
@@ -54,11 +49,14 @@ public class SkuDetails {
     private String currency;
 
     @SerializedName(FIELD_PRICE_AMOUNT_MICROS)
-    private BigDecimal priceValueMicros;
+    private long priceValueMicros;
 
     @SerializedName(FIELD_PRICE)
     private String priceText;
 
+    private transient BigDecimal priceValue;
+    private transient String localizedPrice;
+
     public SkuDetails() {
 
     }
@@ -88,24 +86,34 @@ public class SkuDetails {
         return currency;
     }
 
+    /**
+     * Price in units of currency, computed once
+     */
     public BigDecimal getPriceValue() {
-        return priceValueMicros.divide(MILLION, RoundingMode.HALF_UP);
+        BigDecimal value = priceValue;
+        if (value == null) {
+            value = BigDecimal.valueOf(priceValueMicros, MICROS_SCALE);
+            priceValue = value;
+        }
+        return value;
     }
 
+    /**
+     * Price formatted with default locale, formatted once
+     */
     public String getLocalizedPrice() {
-        if (Utils.equal(currency, "RUB")) {
-            NumberFormat formatter = NumberFormat.getNumberInstance();
-            formatter.setMinimumFractionDigits(0);
-            formatter.setMaximumFractionDigits(2);
-            return formatter.format(getPriceValue()) + " \u20BD";
-        } else {
-            NumberFormat formatter = NumberFormat.getCurrencyInstance();
-            formatter.setCurrency(Currency.getInstance(currency));
-            return formatter.format(getPriceValue());
+        String price = localizedPrice;
+        if (price == null) {
+            price = PriceFormats.format(getPriceValue(), currency);
+            localizedPrice = price;
         }
+        return price;
     }
 
-    BigDecimal getPriceValueMicros() {
+    /**
+     * Price in micro-units, 1,000,000 micro-units equal one unit of the currency
+     */
+    public long getPriceValueMicros() {
         return priceValueMicros;
     }
 
@@ -0,0 +1,415 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.util;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import xyz.truenight.rxinapps.RxInApps;
+
+/**
+ * Storage backed by append-only log file. Every write appends one record protected by CRC32,
+ * values are kept in memory, so reads never touch the file. On open the log is replayed
+ * sequentially through {@link MappedByteBuffer}. Log is compacted in background when it is
+ * mostly made of overwritten values.
+ * <p>
+ * Records of {@link #putAll(Map)} are written as one record, so they are restored all or none.
+ * Record which was not completely written before process death is dropped on open,
+ * writes are not synced to disk, so completed writes survive process death but not power loss.
+ * <p>
+ * Values are serialized by {@link Parser} with their class, generic type arguments are not kept.
+ * Value which can't be parsed is logged and read as null.
+ * <p>
+ * All writes are serialized by the storage instance
+ */
+public class AppendLogStorage implements BatchStorage, Closeable {
+
+    private static final String TAG = RxInApps.TAG;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x52584c47; // RXLG
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final File file;
+    private final Parser parser;
+    private final Scheduler scheduler;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final Object compactionLock = new Object();
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long fileSize;
+    private long liveSize;
+
+    /**
+     * Compaction is done on {@link Schedulers#io()}
+     */
+    public AppendLogStorage(File file, Parser parser) throws IOException {
+        this(file, parser, Schedulers.io());
+    }
+
+    /**
+     * @param scheduler scheduler for background compaction
+     */
+    public AppendLogStorage(File file, Parser parser, Scheduler scheduler) throws IOException {
+        this.file = file;
+        this.parser = parser;
+        this.scheduler = scheduler;
+        open();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Object value = entry.value(parser);
+        if (value == null) {
+            // not parsed again, record is removed from file by next compaction
+            drop(key, entry);
+        }
+        return (T) value;
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * @throws IllegalStateException if storage is closed or write failed
+     */
+    @Override
+    public void putAll(Map<String, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        write(values);
+    }
+
+    @Override
+    public synchronized <T> T update(String key, Updater<T> updater) {
+        T value = updater.apply(this.<T>get(key));
+        write(Collections.singletonMap(key, value));
+        return value;
+    }
+
+    /**
+     * Rewrites log with current values only. Values are written and synced without blocking
+     * writers, they wait only while records appended in the meantime are copied and files are swapped
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            Map<String, Entry> snapshot;
+            long start;
+            synchronized (this) {
+                checkOpen();
+                snapshot = new HashMap<>(entries);
+                start = fileSize;
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+            try {
+                out.setLength(0);
+                FileChannel tmpChannel = out.getChannel();
+                writeFully(tmpChannel, fileHeader());
+                for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                    writeFully(tmpChannel, record(Collections.singletonMap(entry.getKey(), entry.getValue())));
+                }
+                tmpChannel.force(true);
+                synchronized (this) {
+                    checkOpen();
+                    // records appended while snapshot was written
+                    long appended = fileSize - start;
+                    long copied = 0;
+                    while (copied < appended) {
+                        copied += channel.transferTo(start + copied, appended - copied, tmpChannel);
+                    }
+                    if (appended > 0) {
+                        tmpChannel.force(true);
+                    }
+                    long size = tmpChannel.position();
+                    out.close();
+                    closeFile();
+                    if (!tmp.renameTo(file)) {
+                        open();
+                        throw new IOException("Failed to replace " + file + " by compacted log");
+                    }
+                    randomAccessFile = new RandomAccessFile(file, "rw");
+                    channel = randomAccessFile.getChannel();
+                    channel.position(size);
+                    fileSize = size;
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeFile();
+    }
+
+    private synchronized void write(Map<String, ?> values) {
+        checkOpen();
+        Map<String, Entry> written = new HashMap<>();
+        for (Map.Entry<String, ?> value : values.entrySet()) {
+            Object object = value.getValue();
+            written.put(value.getKey(), object == null ? null
+                    : new Entry(object.getClass().getName(), parser.toString(object), object));
+        }
+        try {
+            ByteBuffer record = record(written);
+            long length = record.remaining();
+            try {
+                writeFully(channel, record);
+            } catch (IOException e) {
+                // drop partially written record, so following records are not lost on replay
+                channel.truncate(fileSize);
+                channel.position(fileSize);
+                throw e;
+            }
+            fileSize += length;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write " + file, e);
+        }
+        for (Map.Entry<String, Entry> entry : written.entrySet()) {
+            apply(entry.getKey(), entry.getValue());
+        }
+        if (fileSize > MIN_COMPACTION_SIZE && fileSize > 2 * (liveSize + FILE_HEADER)
+                && compactionScheduled.compareAndSet(false, true)) {
+            scheduler.scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        Log.e(TAG, "Failed to compact " + file, e);
+                        // log stays valid, compaction is retried after next write
+                    } catch (IllegalStateException e) {
+                        // storage was closed
+                    } finally {
+                        compactionScheduled.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    private void checkOpen() {
+        if (channel == null) {
+            throw new IllegalStateException(file + " is closed");
+        }
+    }
+
+    private synchronized void drop(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            liveSize -= entry.size(key);
+        }
+    }
+
+    private void apply(String key, Entry entry) {
+        Entry previous = entry == null ? entries.remove(key) : entries.put(key, entry);
+        if (previous != null) {
+            liveSize -= previous.size(key);
+        }
+        if (entry != null) {
+            liveSize += entry.size(key);
+        }
+    }
+
+    private void open() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        long size = channel.size();
+        if (size < FILE_HEADER) {
+            channel.truncate(0);
+            writeFully(channel, fileHeader());
+            fileSize = FILE_HEADER;
+            return;
+        }
+        entries.clear();
+        liveSize = 0;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            closeFile();
+            throw new IOException(file + " is not a storage log");
+        }
+        long valid = FILE_HEADER;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            Map<String, Entry> record = decode(payload);
+            for (Map.Entry<String, Entry> entry : record.entrySet()) {
+                apply(entry.getKey(), entry.getValue());
+            }
+            valid = buffer.position();
+        }
+        if (valid < size) {
+            // tail was torn by process death
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        fileSize = valid;
+    }
+
+    private void closeFile() throws IOException {
+        if (randomAccessFile != null) {
+            randomAccessFile.close();
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+
+    private static ByteBuffer fileHeader() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        return header;
+    }
+
+    private static ByteBuffer record(Map<String, Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            if (value == null) {
+                out.writeByte(OP_DELETE);
+                out.writeUTF(entry.getKey());
+            } else {
+                out.writeByte(OP_PUT);
+                out.writeUTF(entry.getKey());
+                out.writeUTF(value.type);
+                byte[] json = value.json.getBytes(UTF_8);
+                out.writeInt(json.length);
+                out.write(json);
+            }
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    private static Map<String, Entry> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte op = in.readByte();
+            String key = in.readUTF();
+            if (op == OP_DELETE) {
+                entries.put(key, null);
+            } else {
+                String type = in.readUTF();
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                entries.put(key, new Entry(type, new String(json, UTF_8), null));
+            }
+        }
+        return entries;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static class Entry {
+        final String type;
+        final String json;
+        volatile Object value;
+
+        Entry(String type, String json, Object value) {
+            this.type = type;
+            this.json = json;
+            this.value = value;
+        }
+
+        /**
+         * Value is parsed on first access
+         */
+        Object value(Parser parser) {
+            Object result = value;
+            if (result == null) {
+                try {
+                    result = parser.fromString(json, Class.forName(type));
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to parse value of " + type, e);
+                    return null;
+                }
+                value = result;
+            }
+            return result;
+        }
+
+        long size(String key) {
+            // approximate size of record of single value
+            return RECORD_HEADER + 11 + key.length() + type.length() + json.length();
+        }
+    }
+}
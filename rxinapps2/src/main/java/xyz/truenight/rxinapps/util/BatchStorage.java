@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.util;
+
+import java.util.Map;
+
+/**
+ * {@link Storage} which can write several values at once and update values atomically.
+ * Use {@link Storages} to call these methods on any {@link Storage}
+ */
+public interface BatchStorage extends Storage {
+
+    /**
+     * Puts all values by one write
+     */
+    void putAll(Map<String, ?> values);
+
+    /**
+     * Atomically replaces value of key with result of updater
+     *
+     * @return new value
+     */
+    <T> T update(String key, Updater<T> updater);
+
+    interface Updater<T> {
+
+        /**
+         * @param value current value or null
+         * @return new value
+         */
+        T apply(T value);
+    }
+}
@@ -23,6 +23,7 @@ public class Constants {
 
     public static final int RESULT_OK = 0;                      //Success
     public static final int RESULT_USER_CANCELED = 1;           //User pressed back or canceled a dialog
+    public static final int RESULT_SERVICE_UNAVAILABLE = 2;     //Network connection is down
     public static final int RESULT_BILLING_UNAVAILABLE = 3;     //Billing API version is not supported for the type requested
     public static final int RESULT_ITEM_UNAVAILABLE = 4;        //Requested product is not available for purchase
     public static final int RESULT_DEVELOPER_ERROR = 5;         //Invalid arguments provided to the API. This error can also indicate that the application was not correctly signed or properly set up for In-app Billing in Google Play, or does not have the necessary permissions in its manifest
@@ -38,6 +39,7 @@ public class Constants {
     public static final String INAPP_PURCHASE_DATA = "INAPP_PURCHASE_DATA";
     public static final String RESPONSE_INAPP_SIGNATURE = "INAPP_DATA_SIGNATURE";
     public static final String INAPP_DATA_SIGNATURE_LIST = "INAPP_DATA_SIGNATURE_LIST";
+    public static final String INAPP_CONTINUATION_TOKEN = "INAPP_CONTINUATION_TOKEN";
 
     public static final String PURCHASE_PAYLOAD = "PURCHASE_PAYLOAD";
 }
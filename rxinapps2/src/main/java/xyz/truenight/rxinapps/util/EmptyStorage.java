@@ -1,5 +1,7 @@
 package xyz.truenight.rxinapps.util;
 
+import java.util.Map;
+
 /**
  * Copyright (C) 2017 Mikhail Frolov
  */
@@ -7,7 +9,7 @@ package xyz.truenight.rxinapps.util;
 /**
  * Use this storage to disable caching
  */
-public class EmptyStorage implements Storage {
+public class EmptyStorage implements BatchStorage {
     @Override
     public <T> T get(String key) {
         return null;
@@ -17,4 +19,14 @@ public class EmptyStorage implements Storage {
     public void put(String key, Object value) {
 
     }
+
+    @Override
+    public void putAll(Map<String, ?> values) {
+
+    }
+
+    @Override
+    public <T> T update(String key, Updater<T> updater) {
+        return updater.apply(null);
+    }
 }
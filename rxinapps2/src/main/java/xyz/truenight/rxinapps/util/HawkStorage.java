@@ -5,6 +5,9 @@ import android.content.Context;
 import com.orhanobut.hawk.HawkBuilder;
 import com.orhanobut.hawk.HawkFacade;
 
+import java.util.Collection;
+import java.util.Map;
+
 import xyz.truenight.rxinapps.RxInApps;
 import xyz.truenight.rxinapps.hawk.CachedHawkFacade;
 import xyz.truenight.rxinapps.hawk.SharedPreferencesStorage;
@@ -16,19 +19,22 @@ import xyz.truenight.rxinapps.hawk.SharedPreferencesStorage;
 /**
  * Default storage for cache
  */
-public class HawkStorage implements Storage {
+public class HawkStorage implements BatchStorage {
 
     private static final String STORAGE_TAG = RxInApps.TAG + RxInApps.VERSION;
 
     private final HawkFacade hawk;
+    private final SharedPreferencesStorage preferences;
+    private final StripedLocks locks = new StripedLocks();
 
     public HawkStorage(Context context, Parser parser) {
         HawkBuilder builder = new HawkBuilder(context);
         if (parser != null) {
             builder.setParser(new HawkParser(parser));
         }
+        preferences = new SharedPreferencesStorage(context, STORAGE_TAG);
         hawk = new CachedHawkFacade(builder
-                .setStorage(new SharedPreferencesStorage(context, STORAGE_TAG)));
+                .setStorage(preferences));
     }
 
     @Override
@@ -38,6 +44,40 @@ public class HawkStorage implements Storage {
 
     @Override
     public void put(String key, Object value) {
-        hawk.put(key, value);
+        locks.lock(key);
+        try {
+            hawk.put(key, value);
+        } finally {
+            locks.unlock(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, ?> values) {
+        Collection<Integer> stripes = locks.lockAll(values.keySet());
+        try {
+            preferences.beginBatch();
+            try {
+                for (Map.Entry<String, ?> entry : values.entrySet()) {
+                    hawk.put(entry.getKey(), entry.getValue());
+                }
+            } finally {
+                preferences.commitBatch();
+            }
+        } finally {
+            locks.unlockAll(stripes);
+        }
+    }
+
+    @Override
+    public <T> T update(String key, Updater<T> updater) {
+        locks.lock(key);
+        try {
+            T value = updater.apply(hawk.<T>get(key));
+            hawk.put(key, value);
+            return value;
+        } finally {
+            locks.unlock(key);
+        }
     }
 }
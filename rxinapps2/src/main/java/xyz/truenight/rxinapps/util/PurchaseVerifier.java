@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.util;
+
+import android.text.TextUtils;
+import android.util.Base64;
+import android.util.Log;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+
+import xyz.truenight.rxinapps.BuildConfig;
+
+/**
+ * Verifies purchase signatures with public key decoded once.
+ * {@link Signature} instances are reused per thread
+ */
+public final class PurchaseVerifier {
+
+    private static final String TAG = "IABUtil/PurchaseVerifier";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+    private static final String TEST_PURCHASED = "android.test.purchased";
+
+    private final PublicKey publicKey;
+
+    private final ThreadLocal<Signature> signature = new ThreadLocal<Signature>() {
+        @Override
+        protected Signature initialValue() {
+            try {
+                Signature sig = Signature.getInstance(SIGNATURE_ALGORITHM);
+                sig.initVerify(publicKey);
+                return sig;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * @param base64PublicKey the base64-encoded public key to use for verifying.
+     *                        If key is invalid every verification fails
+     */
+    public PurchaseVerifier(String base64PublicKey) {
+        PublicKey key = null;
+        try {
+            key = Security.generatePublicKey(base64PublicKey);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Invalid license key, all purchases will fail verification.");
+        }
+        this.publicKey = key;
+    }
+
+    /**
+     * Same as {@link Security#verifyPurchase(String, String, String, String)} but without key decoding
+     *
+     * @param productId  the product Id used for debug validation.
+     * @param signedData the signed JSON string (signed, not encrypted)
+     * @param signature  the signature for the data, signed with the private key
+     */
+    public boolean verifyPurchase(String productId, String signedData, String signature) {
+        if (TextUtils.isEmpty(signedData) || TextUtils.isEmpty(signature)) {
+            if (BuildConfig.DEBUG) {
+                //handle test purchase not having signature
+                if (TEST_PURCHASED.equals(productId)) {
+                    return true;
+                }
+            }
+            Log.e(TAG, "Purchase verification failed: missing data.");
+            return false;
+        }
+        return publicKey != null && verify(signedData, signature);
+    }
+
+    private boolean verify(String signedData, String signature) {
+        Signature sig = this.signature.get();
+        try {
+            sig.update(signedData.getBytes(UTF_8));
+            if (!sig.verify(Base64.decode(signature, Base64.DEFAULT))) {
+                Log.e(TAG, "Signature verification failed.");
+                return false;
+            }
+            return true;
+        } catch (GeneralSecurityException e) {
+            Log.e(TAG, "Signature exception.");
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Base64 decoding failed.");
+        }
+        // state of signature is unknown after failure
+        this.signature.remove();
+        return false;
+    }
+}
@@ -19,6 +19,7 @@ import android.text.TextUtils;
 import android.util.Base64;
 import android.util.Log;
 
+import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
@@ -43,6 +44,8 @@ import xyz.truenight.rxinapps.BuildConfig;
 public class Security {
     private static final String TAG = "IABUtil/Security";
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private static final String KEY_FACTORY_ALGORITHM = "RSA";
     private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
 
@@ -110,7 +113,7 @@ public class Security {
         try {
             sig = Signature.getInstance(SIGNATURE_ALGORITHM);
             sig.initVerify(publicKey);
-            sig.update(signedData.getBytes());
+            sig.update(signedData.getBytes(UTF_8));
             if (!sig.verify(Base64.decode(signature, Base64.DEFAULT))) {
                 Log.e(TAG, "Signature verification failed.");
                 return false;
@@ -8,5 +8,8 @@ public interface Storage {
 
     <T> T get(String key);
 
+    /**
+     * @param value value to store or null to remove key
+     */
     void put(String key, Object value);
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.util;
+
+import java.util.Map;
+
+/**
+ * Batch operations for any {@link Storage}, falls back to plain
+ * {@link Storage#put(String, Object)} if storage is not a {@link BatchStorage}.
+ * Null values remove keys
+ */
+public final class Storages {
+
+    private Storages() {
+    }
+
+    /**
+     * Puts all values by one write if storage supports it, otherwise one by one
+     */
+    public static void putAll(Storage storage, Map<String, ?> values) {
+        if (storage instanceof BatchStorage) {
+            ((BatchStorage) storage).putAll(values);
+            return;
+        }
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            storage.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Replaces value of key with result of updater. If storage is not a {@link BatchStorage}
+     * update is atomic only against other updates of the same storage made by this method
+     *
+     * @return new value
+     */
+    public static <T> T update(Storage storage, String key, BatchStorage.Updater<T> updater) {
+        if (storage instanceof BatchStorage) {
+            return ((BatchStorage) storage).update(key, updater);
+        }
+        synchronized (storage) {
+            T value = updater.apply(storage.<T>get(key));
+            storage.put(key, value);
+            return value;
+        }
+    }
+}
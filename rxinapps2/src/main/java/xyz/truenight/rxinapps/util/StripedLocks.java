@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.util;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by keys, so updates of different keys rarely wait for each other
+ */
+class StripedLocks {
+
+    private static final int STRIPES = 16;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    StripedLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (STRIPES - 1);
+    }
+
+    void lock(String key) {
+        locks[stripe(key)].lock();
+    }
+
+    void unlock(String key) {
+        locks[stripe(key)].unlock();
+    }
+
+    /**
+     * Locks stripes of all keys in ascending order, so concurrent calls can't deadlock
+     *
+     * @return stripes which should be passed to {@link #unlockAll(Collection)}
+     */
+    Collection<Integer> lockAll(Collection<String> keys) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String key : keys) {
+            stripes.add(stripe(key));
+        }
+        for (Integer stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    void unlockAll(Collection<Integer> stripes) {
+        for (Integer stripe : stripes) {
+            locks[stripe].unlock();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2017 Mikhail Frolov
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.truenight.rxinapps.util;
+
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.reactivex.Scheduler;
+import xyz.truenight.rxinapps.RxInApps;
+
+/**
+ * Storage which keeps written values in memory and writes them to delegate storage in background.
+ * Writes made within window are coalesced, only the last value of each key is written.
+ * <p>
+ * Values which were not flushed yet are lost if process dies, so at most one window of writes
+ * can be lost. Each flush writes the whole window by one {@link BatchStorage#putAll(Map)}
+ * of delegate, or key by key if delegate is a plain {@link Storage}. Values of one
+ * {@link #putAll(Map)} are always flushed together. Call {@link #flush()}
+ * to persist pending writes synchronously
+ */
+public class WriteBehindStorage implements BatchStorage {
+
+    private static final String TAG = RxInApps.TAG;
+
+    private static final Object NULL = new Object();
+
+    private final Storage delegate;
+    private final long window;
+    private final Scheduler scheduler;
+
+    private volatile ConcurrentMap<String, Object> pending = new ConcurrentHashMap<>();
+    // values taken by flush, readable until they are written to delegate
+    private volatile Map<String, Object> flushing = Collections.emptyMap();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    // writers share read lock, flush takes write lock to take pending values
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final StripedLocks locks = new StripedLocks();
+
+    /**
+     * @param window    time in milliseconds during which writes are coalesced
+     * @param scheduler scheduler for background writes
+     */
+    public WriteBehindStorage(Storage delegate, long window, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(String key) {
+        Object value = pending.get(key);
+        if (value == null) {
+            value = flushing.get(key);
+        }
+        if (value == null) {
+            return delegate.get(key);
+        }
+        return value == NULL ? null : (T) value;
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public void putAll(Map<String, ?> values) {
+        swapLock.readLock().lock();
+        try {
+            Collection<Integer> stripes = locks.lockAll(values.keySet());
+            try {
+                for (Map.Entry<String, ?> entry : values.entrySet()) {
+                    pending.put(entry.getKey(), entry.getValue() == null ? NULL : entry.getValue());
+                }
+            } finally {
+                locks.unlockAll(stripes);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        schedule();
+    }
+
+    @Override
+    public <T> T update(String key, Updater<T> updater) {
+        T value;
+        swapLock.readLock().lock();
+        try {
+            locks.lock(key);
+            try {
+                value = updater.apply(this.<T>get(key));
+                pending.put(key, value == null ? NULL : value);
+            } finally {
+                locks.unlock(key);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        schedule();
+        return value;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    scheduled.set(false);
+                    try {
+                        flush();
+                    } catch (Exception e) {
+                        Log.e(TAG, "Failed to flush storage", e);
+                    }
+                }
+            }, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes pending values to delegate storage by one {@link Storages#putAll(Storage, Map)},
+     * returns when they are written. Writes made during the flush are written next time
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Object> taken;
+            swapLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                taken = pending;
+                flushing = taken;
+                pending = new ConcurrentHashMap<>();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, Object> entry : taken.entrySet()) {
+                values.put(entry.getKey(), entry.getValue() == NULL ? null : entry.getValue());
+            }
+            try {
+                Storages.putAll(delegate, values);
+            } catch (RuntimeException e) {
+                swapLock.writeLock().lock();
+                try {
+                    // return values to pending unless they were overwritten during the write
+                    for (Map.Entry<String, Object> entry : taken.entrySet()) {
+                        pending.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                throw e;
+            } finally {
+                flushing = Collections.emptyMap();
+            }
+        }
+    }
+}
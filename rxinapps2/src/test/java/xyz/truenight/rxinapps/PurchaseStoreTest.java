@@ -0,0 +1,172 @@
+package xyz.truenight.rxinapps;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import xyz.truenight.rxinapps.model.Purchase;
+import xyz.truenight.rxinapps.util.Storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PurchaseStoreTest {
+
+    private static class MemoryStorage implements Storage {
+        final Map<String, Object> values = new HashMap<>();
+        final Map<String, Integer> writes = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(String key) {
+            return (T) values.get(key);
+        }
+
+        @Override
+        public void put(String key, Object value) {
+            Integer count = writes.get(key);
+            writes.put(key, count == null ? 1 : count + 1);
+            if (value == null) {
+                values.remove(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+    }
+
+    private static Purchase purchase(String productId, String token) {
+        String json = "{\"productId\":\"" + productId + "\",\"purchaseToken\":\"" + token + "\"}";
+        Purchase purchase = new Gson().fromJson(json, Purchase.class);
+        purchase.setRawResponse(json);
+        return purchase;
+    }
+
+    private static Map<String, Purchase> catalogue(int size) {
+        Map<String, Purchase> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put("coins" + i, purchase("coins" + i, "token" + i));
+        }
+        return map;
+    }
+
+    @Test
+    public void singlePurchaseIsWrittenAlone() {
+        MemoryStorage storage = new MemoryStorage();
+        PurchaseStore store = new PurchaseStore(storage);
+        store.replace("inapp", catalogue(100), Collections.<String, Object>emptyMap());
+        storage.writes.clear();
+
+        store.put("inapp", purchase("coins5", "renewed"));
+
+        // neither other purchases nor index are rewritten
+        assertEquals(Collections.singletonMap("inapp:ITEM:coins5", 1), storage.writes);
+        assertEquals("renewed", store.get("inapp").get("coins5").getPurchaseToken());
+        assertEquals(100, new PurchaseStore(storage).get("inapp").size());
+    }
+
+    @Test
+    public void unchangedPurchasesAreNotRewritten() {
+        MemoryStorage storage = new MemoryStorage();
+        PurchaseStore store = new PurchaseStore(storage);
+        store.replace("inapp", catalogue(10), Collections.<String, Object>emptyMap());
+        storage.writes.clear();
+
+        Map<String, Purchase> reloaded = catalogue(10);
+        reloaded.remove("coins3");
+        store.replace("inapp", reloaded, Collections.<String, Object>singletonMap("inapp:LAST_LOAD", 1L));
+
+        assertEquals(3, storage.writes.size());
+        assertNull(storage.values.get("inapp:ITEM:coins3"));
+        assertEquals(9, new PurchaseStore(storage).get("inapp").size());
+    }
+
+    @Test
+    public void legacyMapIsMigrated() {
+        MemoryStorage storage = new MemoryStorage();
+        Map<String, Purchase> legacy = catalogue(3);
+        storage.values.put("subs", legacy);
+
+        Map<String, Purchase> map = new PurchaseStore(storage).get("subs");
+
+        assertEquals(legacy, map);
+        assertNull(storage.values.get("subs"));
+        assertSame(legacy.get("coins1"), storage.values.get("subs:ITEM:coins1"));
+        assertEquals(legacy, new PurchaseStore(storage).get("subs"));
+    }
+
+    @Test
+    public void localChangeInvalidatesDigest() {
+        MemoryStorage storage = new MemoryStorage();
+        PurchaseStore store = new PurchaseStore(storage);
+        store.replace("inapp", catalogue(3), Collections.<String, Object>singletonMap("inapp:DIGEST", "digest"));
+        assertTrue(store.isUnchanged("inapp", "digest"));
+
+        store.put("inapp", purchase("coins5", "token5"));
+
+        // identical response must be reloaded to drop locally put purchase
+        assertFalse(store.isUnchanged("inapp", "digest"));
+
+        store.replace("inapp", catalogue(3), Collections.<String, Object>singletonMap("inapp:DIGEST", "digest"));
+        store.remove("inapp", "coins1");
+
+        assertFalse(store.isUnchanged("inapp", "digest"));
+    }
+
+    @Test
+    public void changesAreNotifiedInOrder() throws Exception {
+        MemoryStorage storage = new MemoryStorage();
+        final List<Map<String, Purchase>> previousList = new ArrayList<>();
+        final List<Map<String, Purchase>> currentList = new ArrayList<>();
+        final PurchaseStore store = new PurchaseStore(storage, new PurchaseStore.Listener() {
+            @Override
+            public void onChanged(String productType, Map<String, Purchase> previous, Map<String, Purchase> current) {
+                previousList.add(previous);
+                currentList.add(current);
+            }
+        });
+        store.replace("inapp", catalogue(10), Collections.<String, Object>emptyMap());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        store.put("inapp", purchase("coins" + thread, "token" + j));
+                        store.replace("inapp", catalogue(10), Collections.<String, Object>emptyMap());
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // each change starts from the snapshot notified before it
+        assertEquals(801, currentList.size());
+        for (int i = 1; i < currentList.size(); i++) {
+            assertSame(currentList.get(i - 1), previousList.get(i));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsUnmodifiable() {
+        PurchaseStore store = new PurchaseStore(new MemoryStorage());
+        store.put("inapp", purchase("coins1", "token1"));
+
+        store.get("inapp").remove("coins1");
+    }
+}
@@ -0,0 +1,91 @@
+package xyz.truenight.rxinapps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentSubscribersShareOneRequest() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch joined = new CountDownLatch(100);
+        final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        final Callable<Single<Integer>> factory = new Callable<Single<Integer>>() {
+            @Override
+            public Single<Integer> call() throws Exception {
+                return Single.fromCallable(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        release.await();
+                        return calls.incrementAndGet();
+                    }
+                }).subscribeOn(Schedulers.io());
+            }
+        };
+
+        List<TestObserver<Integer>> observers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            observers.add(singleFlight.get("inapp", factory)
+                    .doOnSubscribe(new Consumer<Disposable>() {
+                        @Override
+                        public void accept(Disposable disposable) throws Exception {
+                            joined.countDown();
+                        }
+                    })
+                    .subscribeOn(Schedulers.computation())
+                    .test());
+        }
+        // let all subscribers join before the request finishes
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        for (TestObserver<Integer> observer : observers) {
+            assertTrue(observer.await(5, TimeUnit.SECONDS));
+            observer.assertValue(1);
+        }
+        assertEquals(1, calls.get());
+
+        singleFlight.get("inapp", factory).test().await().assertValue(2);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void differentKeysDoNotShareRequest() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        Callable<Single<Integer>> factory = new Callable<Single<Integer>>() {
+            @Override
+            public Single<Integer> call() throws Exception {
+                return Single.fromCallable(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return calls.incrementAndGet();
+                    }
+                }).delay(100, TimeUnit.MILLISECONDS);
+            }
+        };
+
+        TestObserver<Integer> managed = singleFlight.get("inapp", factory).test();
+        TestObserver<Integer> subscriptions = singleFlight.get("subs", factory).test();
+
+        managed.await(5, TimeUnit.SECONDS);
+        subscriptions.await(5, TimeUnit.SECONDS);
+        assertEquals(2, calls.get());
+    }
+}
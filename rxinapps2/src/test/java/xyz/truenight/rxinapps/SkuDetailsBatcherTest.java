@@ -0,0 +1,70 @@
+package xyz.truenight.rxinapps;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import xyz.truenight.rxinapps.exception.ProductNotFoundException;
+import xyz.truenight.rxinapps.model.SkuDetails;
+
+import static org.junit.Assert.assertEquals;
+
+public class SkuDetailsBatcherTest {
+
+    private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+    private final Function<List<String>, Single<List<SkuDetails>>> loader = new Function<List<String>, Single<List<SkuDetails>>>() {
+        @Override
+        public Single<List<SkuDetails>> apply(List<String> productIdList) throws Exception {
+            calls.add(productIdList);
+            List<SkuDetails> list = new ArrayList<>();
+            for (String productId : productIdList) {
+                if (!productId.startsWith("unknown")) {
+                    list.add(new Gson().fromJson("{\"productId\":\"" + productId + "\"}", SkuDetails.class));
+                }
+            }
+            return Single.just(list);
+        }
+    };
+
+    @Test
+    public void requestsWithinWindowAreMergedAndDeduplicated() throws Exception {
+        SkuDetailsBatcher batcher = new SkuDetailsBatcher(loader, 100, 20);
+
+        TestObserver<SkuDetails> first = batcher.get("first").test();
+        TestObserver<SkuDetails> second = batcher.get("second").test();
+        TestObserver<SkuDetails> duplicate = batcher.get("first").test();
+        TestObserver<SkuDetails> unknown = batcher.get("unknown").test();
+
+        assertEquals(0, calls.size());
+        first.await(5, TimeUnit.SECONDS);
+
+        assertEquals(1, calls.size());
+        assertEquals(Arrays.asList("first", "second", "unknown"), calls.get(0));
+        assertEquals("first", first.values().get(0).getProductId());
+        assertEquals("second", second.await().values().get(0).getProductId());
+        assertEquals("first", duplicate.await().values().get(0).getProductId());
+        unknown.await().assertError(ProductNotFoundException.class);
+    }
+
+    @Test
+    public void fullWindowIsLoadedImmediately() throws Exception {
+        SkuDetailsBatcher batcher = new SkuDetailsBatcher(loader, TimeUnit.MINUTES.toMillis(1), 2);
+
+        batcher.get("first").test();
+        TestObserver<SkuDetails> second = batcher.get("second").test();
+
+        second.assertValueCount(1);
+        assertEquals(1, calls.size());
+        assertEquals(Arrays.asList("first", "second"), calls.get(0));
+    }
+}
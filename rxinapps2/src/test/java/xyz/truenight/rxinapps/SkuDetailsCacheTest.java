@@ -0,0 +1,75 @@
+package xyz.truenight.rxinapps;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import xyz.truenight.rxinapps.model.SkuDetails;
+import xyz.truenight.rxinapps.util.Storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SkuDetailsCacheTest {
+
+    private static final long LIFETIME = TimeUnit.HOURS.toMillis(1);
+
+    private final Locale locale = Locale.getDefault();
+
+    private static class MemoryStorage implements Storage {
+        final Map<String, Object> values = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(String key) {
+            return (T) values.get(key);
+        }
+
+        @Override
+        public void put(String key, Object value) {
+            values.put(key, value);
+        }
+    }
+
+    private static SkuDetails details(String productId) {
+        return new Gson().fromJson("{\"productId\":\"" + productId + "\"}", SkuDetails.class);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(locale);
+    }
+
+    @Test
+    public void persistedEntriesAreBounded() {
+        MemoryStorage storage = new MemoryStorage();
+        SkuDetailsCache cache = new SkuDetailsCache(storage, LIFETIME, 2);
+
+        cache.putAll("inapp", Arrays.asList(details("first"), details("second")));
+        cache.putAll("inapp", Arrays.asList(details("third")));
+
+        assertEquals(1, storage.values.size());
+        Map<String, SkuDetails> restored = new SkuDetailsCache(storage, LIFETIME, 2)
+                .getAll("inapp", Arrays.asList("first", "second", "third"));
+        assertEquals(Arrays.asList("second", "third"), Arrays.asList(restored.keySet().toArray()));
+    }
+
+    @Test
+    public void entriesOfPreviousLocaleAreDropped() {
+        MemoryStorage storage = new MemoryStorage();
+        Locale.setDefault(Locale.US);
+        new SkuDetailsCache(storage, LIFETIME, 2).putAll("inapp", Arrays.asList(details("first")));
+
+        Locale.setDefault(Locale.GERMANY);
+        SkuDetailsCache cache = new SkuDetailsCache(storage, LIFETIME, 2);
+
+        assertTrue(cache.getAll("inapp", Arrays.asList("first")).isEmpty());
+    }
+}
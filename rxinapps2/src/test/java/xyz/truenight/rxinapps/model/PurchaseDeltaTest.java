@@ -0,0 +1,63 @@
+package xyz.truenight.rxinapps.model;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PurchaseDeltaTest {
+
+    private static Purchase purchase(String productId, String token, int state) {
+        String json = "{\"productId\":\"" + productId + "\",\"purchaseToken\":\"" + token + "\",\"purchaseState\":" + state + "}";
+        Purchase purchase = new Gson().fromJson(json, Purchase.class);
+        purchase.setRawResponse(json);
+        purchase.setPurchaseSignature("signature");
+        return purchase;
+    }
+
+    private static Map<String, Purchase> snapshot(Purchase... purchases) {
+        Map<String, Purchase> map = new HashMap<>();
+        for (Purchase purchase : purchases) {
+            map.put(purchase.getProductId(), purchase);
+        }
+        return map;
+    }
+
+    @Test
+    public void detectsAddedRemovedAndUpdated() {
+        Map<String, Purchase> previous = snapshot(purchase("a", "1", 0), purchase("b", "2", 0), purchase("c", "3", 0));
+        Map<String, Purchase> current = snapshot(purchase("a", "1", 0), purchase("b", "2", 1), purchase("d", "4", 0));
+
+        PurchaseDelta delta = PurchaseDelta.compute(ProductType.MANAGED, previous, current);
+
+        assertEquals(1, delta.getAdded().size());
+        assertEquals("d", delta.getAdded().get(0).getProductId());
+        assertEquals(1, delta.getRemoved().size());
+        assertEquals("c", delta.getRemoved().get(0).getProductId());
+        assertEquals(1, delta.getUpdated().size());
+        assertEquals("b", delta.getUpdated().get(0).getProductId());
+    }
+
+    @Test
+    public void sameSnapshotGivesEmptyDelta() {
+        PurchaseDelta delta = PurchaseDelta.compute(ProductType.MANAGED,
+                snapshot(purchase("a", "1", 0)), snapshot(purchase("a", "1", 0)));
+
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void missingPreviousSnapshotMeansEverythingAdded() {
+        PurchaseDelta delta = PurchaseDelta.compute(ProductType.SUBSCRIPTION, null,
+                snapshot(purchase("a", "1", 0), purchase("b", "2", 0)));
+
+        assertEquals(2, delta.getAdded().size());
+        assertTrue(delta.getRemoved().isEmpty());
+        assertTrue(delta.getUpdated().isEmpty());
+    }
+}
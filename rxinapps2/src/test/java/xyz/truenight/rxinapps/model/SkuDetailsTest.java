@@ -0,0 +1,55 @@
+package xyz.truenight.rxinapps.model;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SkuDetailsTest {
+
+    private static SkuDetails skuDetails(String currency, long micros) {
+        String json = "{\"productId\":\"premium\",\"price_currency_code\":\"" + currency + "\",\"price_amount_micros\":" + micros + "}";
+        return new Gson().fromJson(json, SkuDetails.class);
+    }
+
+    @Test
+    public void priceIsExact() {
+        SkuDetails details = skuDetails("USD", 990000);
+
+        assertEquals(990000, details.getPriceValueMicros());
+        assertEquals(0, new BigDecimal("0.99").compareTo(details.getPriceValue()));
+    }
+
+    @Test
+    public void priceIsComputedOnce() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        try {
+            SkuDetails details = skuDetails("USD", 1990000);
+
+            assertEquals("$1.99", details.getLocalizedPrice());
+            assertSame(details.getPriceValue(), details.getPriceValue());
+            assertSame(details.getLocalizedPrice(), details.getLocalizedPrice());
+            // formatter is shared between instances
+            assertEquals("$1.99", skuDetails("USD", 1990000).getLocalizedPrice());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void rubleHasSign() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        try {
+            assertEquals("75 \u20BD", skuDetails("RUB", 75000000).getLocalizedPrice());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package xyz.truenight.rxinapps.util;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import xyz.truenight.rxinapps.model.Purchase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AppendLogStorageTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("storage", ".log");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private AppendLogStorage open() throws Exception {
+        return new AppendLogStorage(file, new GsonParser(), Schedulers.trampoline());
+    }
+
+    @Test
+    public void valuesAreReplayedOnOpen() throws Exception {
+        AppendLogStorage storage = open();
+        Purchase purchase = new Gson().fromJson("{\"productId\":\"premium\",\"purchaseToken\":\"token\"}", Purchase.class);
+        storage.put("inapp:ITEM:premium", purchase);
+        storage.put("inapp:LAST_LOAD", 42L);
+        storage.put("removed", "value");
+        storage.put("removed", null);
+        storage.close();
+
+        storage = open();
+        Purchase restored = storage.get("inapp:ITEM:premium");
+        assertEquals("token", restored.getPurchaseToken());
+        assertEquals(42L, (long) storage.<Long>get("inapp:LAST_LOAD"));
+        assertNull(storage.get("removed"));
+        storage.close();
+    }
+
+    @Test
+    public void tornTailIsDropped() throws Exception {
+        AppendLogStorage storage = open();
+        Map<String, Object> values = new HashMap<>();
+        values.put("first", "1");
+        values.put("second", "2");
+        storage.putAll(values);
+        storage.put("third", "3");
+        storage.close();
+
+        // lose the end of the last record
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        storage = open();
+        assertEquals("1", storage.get("first"));
+        assertEquals("2", storage.get("second"));
+        assertNull(storage.get("third"));
+
+        // log is writable after recovery
+        storage.put("third", "3");
+        storage.close();
+        storage = open();
+        assertEquals("3", storage.get("third"));
+        storage.close();
+    }
+
+    @Test
+    public void corruptedRecordIsDropped() throws Exception {
+        AppendLogStorage storage = open();
+        storage.put("first", "1");
+        storage.put("second", "2");
+        storage.close();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length() - 1);
+        raf.write('x');
+        raf.close();
+
+        storage = open();
+        assertEquals("1", storage.get("first"));
+        assertNull(storage.get("second"));
+        storage.close();
+    }
+
+    @Test
+    public void compactionKeepsLatestValues() throws Exception {
+        // background compaction never runs
+        AppendLogStorage storage = new AppendLogStorage(file, new GsonParser(), new TestScheduler());
+        for (int i = 0; i < 5000; i++) {
+            storage.put("counter", i);
+            storage.put("key" + (i % 10), "value" + i);
+        }
+        long before = file.length();
+        storage.compact();
+        assertTrue(file.length() < before / 100);
+
+        storage.put("after", "compaction");
+        storage.close();
+
+        storage = open();
+        assertEquals(4999, (int) storage.<Integer>get("counter"));
+        assertEquals("value4999", storage.get("key9"));
+        assertEquals("compaction", storage.get("after"));
+        storage.close();
+    }
+
+    @Test
+    public void writesDuringCompactionAreKept() throws Exception {
+        final AppendLogStorage storage = new AppendLogStorage(file, new GsonParser(), new TestScheduler());
+        for (int i = 0; i < 5000; i++) {
+            storage.put("key" + (i % 100), "value" + i);
+        }
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread compaction = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (writing.get()) {
+                        storage.compact();
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        });
+        compaction.start();
+        for (int i = 0; i < 2000; i++) {
+            storage.put("new" + i, i);
+        }
+        writing.set(false);
+        compaction.join();
+        assertNull(failure.get());
+        storage.close();
+
+        AppendLogStorage reopened = open();
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i, (int) reopened.<Integer>get("new" + i));
+        }
+        assertEquals("value4999", reopened.get("key99"));
+        reopened.close();
+    }
+
+    @Test
+    public void logIsCompactedInBackground() throws Exception {
+        AppendLogStorage storage = open();
+        for (int i = 0; i < 20000; i++) {
+            storage.put("counter", i);
+        }
+        assertTrue(file.length() < 2 * 64 * 1024 + 100);
+        storage.close();
+
+        storage = open();
+        assertEquals(19999, (int) storage.<Integer>get("counter"));
+        storage.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void putAfterCloseFails() throws Exception {
+        AppendLogStorage storage = open();
+        storage.close();
+
+        storage.put("inapp:LAST_LOAD", 42L);
+    }
+}
@@ -0,0 +1,208 @@
+package xyz.truenight.rxinapps.util;
+
+import org.junit.Test;
+
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindStorageTest {
+
+    private static class CountingStorage implements BatchStorage {
+        final Map<String, Object> values = new HashMap<>();
+        int writes;
+        int batches;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(String key) {
+            return (T) values.get(key);
+        }
+
+        @Override
+        public void put(String key, Object value) {
+            writes++;
+            values.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<String, ?> values) {
+            writes++;
+            batches++;
+            this.values.putAll(values);
+        }
+
+        @Override
+        public <T> T update(String key, Updater<T> updater) {
+            T value = updater.apply(this.<T>get(key));
+            put(key, value);
+            return value;
+        }
+    }
+
+    @Test
+    public void writesWithinWindowAreCoalesced() {
+        CountingStorage delegate = new CountingStorage();
+        TestScheduler scheduler = new TestScheduler();
+        WriteBehindStorage storage = new WriteBehindStorage(delegate, 100, scheduler);
+
+        for (int i = 0; i < 10; i++) {
+            storage.put("inapp", i);
+            storage.put("inapp:LAST_LOAD", (long) i);
+        }
+
+        assertEquals(9, (int) storage.<Integer>get("inapp"));
+        assertEquals(0, delegate.writes);
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        // all keys are written at once
+        assertEquals(1, delegate.writes);
+        assertEquals(1, delegate.batches);
+        assertEquals(9, delegate.values.get("inapp"));
+        assertEquals(9L, delegate.values.get("inapp:LAST_LOAD"));
+    }
+
+    @Test
+    public void updateSeesPendingValue() {
+        CountingStorage delegate = new CountingStorage();
+        TestScheduler scheduler = new TestScheduler();
+        WriteBehindStorage storage = new WriteBehindStorage(delegate, 100, scheduler);
+        BatchStorage.Updater<Integer> increment = new BatchStorage.Updater<Integer>() {
+            @Override
+            public Integer apply(Integer value) {
+                return value == null ? 1 : value + 1;
+            }
+        };
+
+        storage.update("count", increment);
+        storage.update("count", increment);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, delegate.values.get("count"));
+        assertEquals(1, delegate.writes);
+    }
+
+    @Test
+    public void flushWritesPendingValues() {
+        CountingStorage delegate = new CountingStorage();
+        WriteBehindStorage storage = new WriteBehindStorage(delegate, 100, new TestScheduler());
+        delegate.values.put("subs", "old");
+
+        storage.put("subs", null);
+        assertNull(storage.get("subs"));
+        assertEquals("old", delegate.values.get("subs"));
+
+        storage.flush();
+        assertEquals(1, delegate.writes);
+        assertEquals(1, delegate.batches);
+        assertNull(delegate.values.get("subs"));
+        assertNull(storage.get("subs"));
+    }
+
+    @Test
+    public void plainDelegateIsWrittenKeyByKey() {
+        final Map<String, Object> values = new HashMap<>();
+        Storage delegate = new Storage() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <T> T get(String key) {
+                return (T) values.get(key);
+            }
+
+            @Override
+            public void put(String key, Object value) {
+                values.put(key, value);
+            }
+        };
+        WriteBehindStorage storage = new WriteBehindStorage(delegate, 100, new TestScheduler());
+
+        storage.put("inapp", 1);
+        storage.put("inapp:LAST_LOAD", 1L);
+        storage.flush();
+
+        assertEquals(1, values.get("inapp"));
+        assertEquals(1L, values.get("inapp:LAST_LOAD"));
+    }
+
+    @Test
+    public void flushDoesNotSplitPutAll() throws Exception {
+        CountingStorage delegate = new CountingStorage();
+        final WriteBehindStorage storage = new WriteBehindStorage(delegate, 100, new TestScheduler());
+        final Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                storage.flush();
+            }
+        });
+        // starts flush when the first value of the batch is already pending
+        Map<String, Object> values = new LinkedHashMap<String, Object>() {
+            @Override
+            public Set<Map.Entry<String, Object>> entrySet() {
+                final Set<Map.Entry<String, Object>> entries = super.entrySet();
+                return new AbstractSet<Map.Entry<String, Object>>() {
+                    @Override
+                    public Iterator<Map.Entry<String, Object>> iterator() {
+                        final Iterator<Map.Entry<String, Object>> iterator = entries.iterator();
+                        return new Iterator<Map.Entry<String, Object>>() {
+                            int index;
+
+                            @Override
+                            public boolean hasNext() {
+                                return iterator.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<String, Object> next() {
+                                if (index++ == 1) {
+                                    flusher.start();
+                                    awaitBlockedOrDone(flusher);
+                                }
+                                return iterator.next();
+                            }
+
+                            @Override
+                            public void remove() {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return entries.size();
+                    }
+                };
+            }
+        };
+        values.put("inapp:INDEX", "index");
+        values.put("inapp:ITEM:premium", "premium");
+        values.put("inapp:DIGEST", "digest");
+
+        storage.putAll(values);
+        flusher.join(5000);
+
+        assertEquals(1, delegate.writes);
+        assertEquals("index", delegate.values.get("inapp:INDEX"));
+        assertEquals("premium", delegate.values.get("inapp:ITEM:premium"));
+        assertEquals("digest", delegate.values.get("inapp:DIGEST"));
+    }
+
+    private static void awaitBlockedOrDone(Thread thread) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TERMINATED) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+}